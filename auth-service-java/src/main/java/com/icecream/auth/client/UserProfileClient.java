@@ -0,0 +1,40 @@
+package com.icecream.auth.client;
+
+import com.icecream.auth.dto.RegisterRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class UserProfileClient {
+    private static final String USERS_URL = "http://user-service:8082/api/users";
+
+    private final RestTemplate restTemplate;
+
+    /**
+     * Creates the profile in user-service, authenticated as the new user. Runs on the
+     * application task executor so registration does not wait for user-service.
+     */
+    @Async
+    public void createProfile(RegisterRequest request, String bearerToken) {
+        try {
+            Map<String, String> profileData = new HashMap<>();
+            profileData.put("email", request.getEmail());
+            profileData.put("firstName", request.getFirstName());
+            profileData.put("lastName", request.getLastName());
+            HttpHeaders headers = new HttpHeaders();
+            headers.setBearerAuth(bearerToken);
+            restTemplate.postForObject(USERS_URL, new HttpEntity<>(profileData, headers), Object.class);
+        } catch (Exception e) {
+            // Log but don't fail registration - user profile can be created later
+            System.err.println("Failed to create user profile: " + e.getMessage());
+        }
+    }
+}
@@ -1,28 +1,38 @@
 package com.icecream.auth.config;
 
+import com.icecream.auth.model.User;
 import com.icecream.auth.repository.UserRepository;
+import com.icecream.auth.security.BoundedPasswordEncoder;
+import com.icecream.auth.security.PasswordHashCalibrator;
+import com.icecream.auth.security.PasswordHashingExecutor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.Map;
+
 @Configuration
 @RequiredArgsConstructor
 public class ApplicationConfig {
 
     private final UserRepository repository;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final PasswordHashCalibrator passwordHashCalibrator;
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(HttpComponentsClientHttpRequestFactory httpRequestFactory) {
+        return new RestTemplate(httpRequestFactory);
     }
 
     @Bean
@@ -36,6 +46,8 @@ public class ApplicationConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService());
         authProvider.setPasswordEncoder(passwordEncoder());
+        // Hashes below the calibrated cost are re-encoded after a successful login
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService());
         return authProvider;
     }
 
@@ -45,7 +57,23 @@ public class ApplicationConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public UserDetailsPasswordService userDetailsPasswordService() {
+        return (user, newPassword) -> {
+            repository.updatePassword(user.getUsername(), newPassword);
+            // Hand back the same entity so the authenticated principal stays a User
+            ((User) user).setPassword(newPassword);
+            return user;
+        };
+    }
+
+    @Bean
+    public BoundedPasswordEncoder passwordEncoder() {
+        // New hashes use the cost calibrated for this host and carry a {bcrypt} prefix.
+        // Unprefixed legacy hashes still verify, and are reported as needing an upgrade.
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(passwordHashCalibrator.getCost());
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        // BCrypt runs on a bounded pool so hashing bursts cannot take every request thread
+        return new BoundedPasswordEncoder(delegating, passwordHashingExecutor);
     }
 }
@@ -1,156 +1,56 @@
 package com.icecream.auth.config;
 
+import com.icecream.auth.dto.UserImportRecord;
+import com.icecream.auth.dto.UserImportResult;
 import com.icecream.auth.model.Role;
-import com.icecream.auth.model.User;
-import com.icecream.auth.repository.UserRepository;
+import com.icecream.auth.service.UserImportService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.stream.Stream;
+
 @Component
 @RequiredArgsConstructor
 public class DataInitializer implements CommandLineRunner {
 
-    private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private static final String DEFAULT_PASSWORD = "password123";
+
+    private final UserImportService userImportService;
 
     @Override
     public void run(String... args) throws Exception {
-        // Check if admin user already exists to avoid duplicates
-        if (userRepository.findByEmail("admin@example.com").isEmpty()) {
-            // Create default admin user
-            User admin = User.builder()
-                    .email("admin@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.ADMIN)
-                    .build();
-
-            userRepository.save(admin);
-            System.out.println("Admin user created successfully");
-        } else {
-            System.out.println("Admin user already exists, skipping creation");
-        }
-
-        // Check if other default users exist to avoid duplicates
-        if (userRepository.findByEmail("user1@example.com").isEmpty()) {
-            User user1 = User.builder()
-                    .email("user1@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(user1);
-            System.out.println("User1 created successfully");
-        }
-
-        if (userRepository.findByEmail("user2@example.com").isEmpty()) {
-            User user2 = User.builder()
-                    .email("user2@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(user2);
-            System.out.println("User2 created successfully");
-        }
-
-        if (userRepository.findByEmail("user3@example.com").isEmpty()) {
-            User user3 = User.builder()
-                    .email("user3@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(user3);
-            System.out.println("User3 created successfully");
-        }
-
-        if (userRepository.findByEmail("user4@example.com").isEmpty()) {
-            User user4 = User.builder()
-                    .email("user4@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(user4);
-            System.out.println("User4 created successfully");
-        }
-
-        if (userRepository.findByEmail("user5@example.com").isEmpty()) {
-            User user5 = User.builder()
-                    .email("user5@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(user5);
-            System.out.println("User5 created successfully");
-        }
-
-        if (userRepository.findByEmail("test@example.com").isEmpty()) {
-            User test = User.builder()
-                    .email("test@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(test);
-            System.out.println("Test user created successfully");
-        }
-
-        if (userRepository.findByEmail("test2@example.com").isEmpty()) {
-            User test2 = User.builder()
-                    .email("test2@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(test2);
-            System.out.println("Test2 user created successfully");
-        }
-
-        if (userRepository.findByEmail("john.doe@example.com").isEmpty()) {
-            User john = User.builder()
-                    .email("john.doe@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(john);
-            System.out.println("John Doe user created successfully");
-        }
-
-        if (userRepository.findByEmail("jane.smith@example.com").isEmpty()) {
-            User jane = User.builder()
-                    .email("jane.smith@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(jane);
-            System.out.println("Jane Smith user created successfully");
-        }
-
-        if (userRepository.findByEmail("newuser@example.com").isEmpty()) {
-            User newUser = User.builder()
-                    .email("newuser@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(newUser);
-            System.out.println("New user created successfully");
-        }
-
-        if (userRepository.findByEmail("gatewayuser@example.com").isEmpty()) {
-            User gatewayUser = User.builder()
-                    .email("gatewayuser@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(gatewayUser);
-            System.out.println("Gateway user created successfully");
-        }
+        // Seed users go through the bulk import path: existing emails are skipped with
+        // a single query and the rest are inserted as one batch
+        List<UserImportRecord> seeds = Stream.concat(
+                Stream.of(seed("admin@example.com", Role.ADMIN)),
+                Stream.of(
+                        "user1@example.com",
+                        "user2@example.com",
+                        "user3@example.com",
+                        "user4@example.com",
+                        "user5@example.com",
+                        "test@example.com",
+                        "test2@example.com",
+                        "john.doe@example.com",
+                        "jane.smith@example.com",
+                        "newuser@example.com",
+                        "gatewayuser@example.com",
+                        "signupuser@example.com")
+                        .map(email -> seed(email, Role.USER)))
+                .toList();
+
+        UserImportResult result = userImportService.importUsers(seeds.iterator());
+        System.out.println("Seed users: " + result.getInserted() + " created, "
+                + result.getSkipped() + " already present (" + result.getElapsedMillis() + " ms)");
+    }
 
-        if (userRepository.findByEmail("signupuser@example.com").isEmpty()) {
-            User signupUser = User.builder()
-                    .email("signupuser@example.com")
-                    .password(passwordEncoder.encode("password123"))
-                    .role(Role.USER)
-                    .build();
-            userRepository.save(signupUser);
-            System.out.println("Signup user created successfully");
-        }
+    private static UserImportRecord seed(String email, Role role) {
+        return UserImportRecord.builder()
+                .email(email)
+                .password(DEFAULT_PASSWORD)
+                .role(role.name())
+                .build();
     }
-}
\ No newline at end of file
+}
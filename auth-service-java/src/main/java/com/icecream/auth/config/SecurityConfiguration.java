@@ -44,6 +44,7 @@ public class SecurityConfiguration {
                                 .csrf(AbstractHttpConfigurer::disable)
                                 .authorizeHttpRequests(auth -> auth
                                                 .requestMatchers("/api/auth/**").permitAll()
+                                                .requestMatchers("/api/admin/**").hasRole("ADMIN")
                                                 .requestMatchers("/actuator/**").permitAll()  // Allow actuator endpoints
                                                 .anyRequest().authenticated())
                                 .sessionManagement(session -> session
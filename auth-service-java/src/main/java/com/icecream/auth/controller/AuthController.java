@@ -3,10 +3,16 @@ package com.icecream.auth.controller;
 import com.icecream.auth.dto.AuthRequest;
 import com.icecream.auth.dto.AuthResponse;
 import com.icecream.auth.dto.RegisterRequest;
+import com.icecream.auth.dto.ServiceTokenRequest;
+import com.icecream.auth.dto.ServiceTokenResponse;
+import com.icecream.auth.security.PasswordHashingUnavailableException;
 import com.icecream.auth.service.AuthenticationService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -30,6 +36,14 @@ public class AuthController {
         return ResponseEntity.ok(service.authenticate(request));
     }
 
+    // Client credentials for service-to-service calls, e.g. order-service adjusting stock
+    @PostMapping("/service-token")
+    public ResponseEntity<ServiceTokenResponse> serviceToken(@RequestBody ServiceTokenRequest request) {
+        return service.issueServiceToken(request)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+    }
+
     @GetMapping("/validate")
     public ResponseEntity<Boolean> validateToken(HttpServletRequest request) {
         final String authHeader = request.getHeader("Authorization");
@@ -57,10 +71,19 @@ public class AuthController {
         return ResponseEntity.ok(info);
     }
 
+    @ExceptionHandler(PasswordHashingUnavailableException.class)
+    public ResponseEntity<String> hashingUnavailable(PasswordHashingUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
     @PostMapping("/logout")
-    public ResponseEntity<String> logout() {
-        // Since we are using stateless JWT, we can't truly "logout" on server side
-        // without a blacklist, but we return a success response.
+    public ResponseEntity<String> logout(HttpServletRequest request) {
+        final String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            service.logout(authHeader.substring(7));
+        }
         return ResponseEntity.ok("Logged out successfully");
     }
 }
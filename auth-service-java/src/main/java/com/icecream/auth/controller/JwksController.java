@@ -0,0 +1,60 @@
+package com.icecream.auth.controller;
+
+import com.icecream.auth.security.SigningKeyManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigInteger;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes the public halves of the signing keys as a JSON Web Key Set, so other
+ * services can verify tokens locally instead of calling {@code /api/auth/validate}.
+ */
+@RestController
+@RequestMapping("/api/auth/.well-known")
+@RequiredArgsConstructor
+public class JwksController {
+
+    private final SigningKeyManager signingKeys;
+
+    @GetMapping("/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        List<Map<String, Object>> keys = signingKeys.getVerificationKeys().stream()
+                .map(key -> toJwk(key.kid(), (RSAPublicKey) key.keyPair().getPublic()))
+                .toList();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                .body(Map.of("keys", keys));
+    }
+
+    private static Map<String, Object> toJwk(String kid, RSAPublicKey key) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "RSA");
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", "RS256");
+        jwk.put("n", base64Url(key.getModulus()));
+        jwk.put("e", base64Url(key.getPublicExponent()));
+        return jwk;
+    }
+
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        // JWK integers are unsigned big-endian; drop the sign byte BigInteger may add
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
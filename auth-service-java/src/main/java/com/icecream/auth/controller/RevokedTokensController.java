@@ -0,0 +1,31 @@
+package com.icecream.auth.controller;
+
+import com.icecream.auth.security.TokenRevocationIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes the ids ({@code jti}) of logged-out tokens that haven't expired yet, so
+ * services verifying tokens locally can reject them too. Ids alone grant nothing.
+ */
+@RestController
+@RequestMapping("/api/auth")
+@RequiredArgsConstructor
+public class RevokedTokensController {
+
+    private final TokenRevocationIndex revocationIndex;
+
+    @GetMapping("/revoked-tokens")
+    public ResponseEntity<Map<String, List<String>>> revokedTokens() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(Map.of("tokens", revocationIndex.liveIds()));
+    }
+}
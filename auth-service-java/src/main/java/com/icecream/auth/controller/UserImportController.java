@@ -0,0 +1,30 @@
+package com.icecream.auth.controller;
+
+import com.icecream.auth.dto.UserImportResult;
+import com.icecream.auth.service.UserImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/admin/users")
+@RequiredArgsConstructor
+public class UserImportController {
+
+    private final UserImportService service;
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<UserImportResult> importNdjson(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(service.importNdjson(request.getInputStream()));
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<UserImportResult> importCsv(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(service.importCsv(request.getInputStream()));
+    }
+}
@@ -0,0 +1,15 @@
+package com.icecream.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ServiceTokenRequest {
+    private String clientId;
+    private String clientSecret;
+}
@@ -0,0 +1,16 @@
+package com.icecream.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserImportRecord {
+    private String email;
+    private String password;
+    private String role;
+}
@@ -0,0 +1,18 @@
+package com.icecream.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserImportResult {
+    private long read;
+    private long inserted;
+    private long skipped;
+    private long failed;
+    private long elapsedMillis;
+}
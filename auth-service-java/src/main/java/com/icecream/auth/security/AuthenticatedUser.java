@@ -0,0 +1,49 @@
+package com.icecream.auth.security;
+
+import com.icecream.auth.model.Role;
+import lombok.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Request principal built from the claims of a verified token, so authenticating
+ * a request does not need to load the {@link com.icecream.auth.model.User} entity.
+ */
+@Value
+public class AuthenticatedUser implements Principal {
+
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+    // Role claim of service tokens; they carry no user id, so they never become an AuthenticatedUser
+    public static final String SERVICE_ROLE = "SERVICE";
+
+    Long id;
+    String email;
+    Role role;
+
+    /**
+     * Returns the principal carried by the token, or {@code null} for tokens issued
+     * before the id and role claims were added.
+     */
+    public static AuthenticatedUser fromToken(VerifiedToken token) {
+        Object id = token.getClaim(USER_ID_CLAIM);
+        Object role = token.getClaim(ROLE_CLAIM);
+        if (!(id instanceof Number) || !(role instanceof String) || token.getSubject() == null) {
+            return null;
+        }
+        return new AuthenticatedUser(((Number) id).longValue(), token.getSubject(), Role.valueOf((String) role));
+    }
+
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -0,0 +1,43 @@
+package com.icecream.auth.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * {@link PasswordEncoder} that runs the expensive encode/matches calls of its
+ * delegate on the {@link PasswordHashingExecutor} instead of the calling thread.
+ */
+@RequiredArgsConstructor
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.execute("encode", () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executor.execute("matches", () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Hashes a batch for bulk imports on the same executor, using only its bulk share
+     * of the threads, so an import never takes every core from logins.
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        return executor.executeAll("encode", rawPasswords.stream()
+                .map(rawPassword -> (Supplier<String>) () -> delegate.encode(rawPassword))
+                .toList());
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -1,35 +1,116 @@
 package com.icecream.auth.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Service
+@RequiredArgsConstructor
 public class JwtService {
 
-    @Value("${application.security.jwt.secret-key}")
-    private String secretKey;
+    private final SigningKeyManager signingKeys;
+
     @Value("${application.security.jwt.expiration}")
     private long jwtExpiration;
+    @Value("${application.security.service-clients.token-lifetime:PT1H}")
+    private Duration serviceTokenLifetime;
+    @Value("${application.security.jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+
+    // Built once: the parser is immutable and thread-safe, and resolves the
+    // verification key from the token's kid header on each parse.
+    private JwtParser parser;
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        Key key = signingKeys.getPublicKey(header.getKeyId());
+                        if (key == null) {
+                            throw new UnsupportedJwtException("Unknown signing key: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        long remainingMillis = token.getExpiresAt() == null
+                                ? jwtExpiration
+                                : token.getExpiresAt().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Parses the token and checks its signature and expiration exactly once.
+     * Tokens already verified are served from a bounded cache keyed by a digest
+     * of the token, so repeat requests with the same bearer token skip the HMAC.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        String key = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && !cached.isExpired()) {
+            return cached;
+        }
+        VerifiedToken verified = VerifiedToken.from(parser.parseClaimsJws(token).getBody());
+        verifiedTokens.put(key, verified);
+        return verified;
+    }
 
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return extractClaim(token, VerifiedToken::getSubject);
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public <T> T extractClaim(String token, Function<VerifiedToken, T> claimsResolver) {
+        return claimsResolver.apply(verify(token));
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -37,44 +118,48 @@ public class JwtService {
     }
 
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
-        return buildToken(extraClaims, userDetails, jwtExpiration);
+        return buildToken(extraClaims, userDetails.getUsername(), jwtExpiration);
     }
 
-    private String buildToken(Map<String, Object> extraClaims, UserDetails userDetails, long expiration) {
+    /** A token for another service acting on its own behalf; its subject is the client id. */
+    public String generateServiceToken(String clientId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(AuthenticatedUser.ROLE_CLAIM, AuthenticatedUser.SERVICE_ROLE);
+        return buildToken(claims, clientId, serviceTokenLifetime.toMillis());
+    }
+
+    public Duration getServiceTokenLifetime() {
+        return serviceTokenLifetime;
+    }
+
+    private String buildToken(Map<String, Object> extraClaims, String subject, long expiration) {
+        SigningKeyManager.SigningKey signingKey = signingKeys.getActiveKey();
         return Jwts
                 .builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.kid())
                 .setClaims(extraClaims)
-                .setSubject(userDetails.getUsername())
+                .setId(UUID.randomUUID().toString())
+                .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey.keyPair().getPrivate(), SignatureAlgorithm.RS256)
                 .compact();
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return isTokenValid(verify(token), userDetails);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public boolean isTokenValid(VerifiedToken token, UserDetails userDetails) {
+        return userDetails.getUsername().equals(token.getSubject()) && !token.isExpired();
     }
 
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
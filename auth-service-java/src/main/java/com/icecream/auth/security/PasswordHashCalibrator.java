@@ -0,0 +1,81 @@
+package com.icecream.auth.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Picks the BCrypt work factor for this host at startup.
+ * <p>
+ * Hashing is timed at a cheap probe cost, and each extra cost step doubles the
+ * work. The highest cost whose estimated latency fits the configured target is
+ * chosen, within the configured minimum and maximum. The minimum defaults to 8,
+ * below BCrypt's default of 10, so hosts too slow for cost 10 within the target
+ * can still get there. The estimates per cost and the measured latency of the
+ * chosen cost are published as gauges.
+ */
+@Component
+public class PasswordHashCalibrator {
+
+    private static final int PROBE_COST = 8;
+    private static final int PROBE_ROUNDS = 5;
+    private static final String PROBE_PASSWORD = "calibration-probe";
+
+    @Getter
+    private final int cost;
+    @Getter
+    private final double measuredMillis;
+    private final Map<Integer, Double> estimatedMillisByCost = new TreeMap<>();
+
+    public PasswordHashCalibrator(
+            MeterRegistry meterRegistry,
+            @Value("${application.security.password.calibration.target-latency:250ms}") Duration targetLatency,
+            @Value("${application.security.password.calibration.min-cost:8}") int minCost,
+            @Value("${application.security.password.calibration.max-cost:14}") int maxCost) {
+        double probeMillis = medianMillis(new BCryptPasswordEncoder(PROBE_COST), PROBE_ROUNDS);
+        int chosen = minCost;
+        for (int candidate = minCost; candidate <= maxCost; candidate++) {
+            double estimate = probeMillis * Math.pow(2, candidate - PROBE_COST);
+            estimatedMillisByCost.put(candidate, estimate);
+            if (estimate <= targetLatency.toMillis()) {
+                chosen = candidate;
+            }
+        }
+        this.cost = chosen;
+        this.measuredMillis = medianMillis(new BCryptPasswordEncoder(chosen), 1);
+        System.out.println("[auth-service] Password hashing calibrated: bcrypt cost " + cost
+                + " (~" + Math.round(measuredMillis) + " ms, target " + targetLatency.toMillis() + " ms)");
+
+        Gauge.builder("auth.password.hash.cost", this, PasswordHashCalibrator::getCost)
+                .description("BCrypt work factor chosen by startup calibration")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hash.calibrated.millis", this, PasswordHashCalibrator::getMeasuredMillis)
+                .description("Measured hash latency at the chosen cost")
+                .register(meterRegistry);
+        estimatedMillisByCost.forEach((candidate, estimate) ->
+                Gauge.builder("auth.password.hash.estimated.millis", () -> estimate)
+                        .description("Estimated hash latency per BCrypt cost on this host")
+                        .tag("cost", String.valueOf(candidate))
+                        .register(meterRegistry));
+    }
+
+    private static double medianMillis(BCryptPasswordEncoder encoder, int rounds) {
+        encoder.encode(PROBE_PASSWORD);  // warm-up
+        double[] samples = new double[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long started = System.nanoTime();
+            encoder.encode(PROBE_PASSWORD);
+            samples[i] = (System.nanoTime() - started) / 1_000_000.0;
+        }
+        Arrays.sort(samples);
+        return samples[rounds / 2];
+    }
+}
@@ -0,0 +1,182 @@
+package com.icecream.auth.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs CPU-bound password hashing on a small pool sized to the host's cores, so a
+ * burst of logins cannot occupy every servlet thread. The queue is bounded and
+ * full queues are rejected immediately, which callers surface as HTTP 503.
+ * <p>
+ * Bulk work such as user imports goes through the same pool with
+ * {@link #executeAll(String, List)}, which keeps only a share of the threads busy
+ * and waits for room instead of failing, so logins are served alongside it.
+ */
+@Component
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore bulkPermits;
+    private final Duration timeout;
+    private final Timer waitTimer;
+    private final Counter rejections;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> hashTimers = new ConcurrentHashMap<>();
+
+    public PasswordHashingExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${application.security.password.hashing.threads:0}") int threads,
+            @Value("${application.security.password.hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${application.security.password.hashing.bulk-threads:0}") int bulkThreads,
+            @Value("${application.security.password.hashing.timeout:5s}") Duration timeout) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.bulkPermits = new Semaphore(bulkThreads > 0 ? bulkThreads : Math.max(1, poolSize / 2));
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+        this.waitTimer = Timer.builder("auth.password.hashing.wait")
+                .description("Time a hashing task spends queued before it starts")
+                .register(meterRegistry);
+        this.rejections = Counter.builder("auth.password.hashing.rejected")
+                .description("Hashing tasks rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Hashing tasks waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hashing tasks currently running")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.threads", executor, ThreadPoolExecutor::getMaximumPoolSize)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code task} on the hashing pool and waits for its result, recording the
+     * hash latency under {@code auth.password.hash} tagged with {@code operation}.
+     *
+     * @throws PasswordHashingUnavailableException if the queue is full or the task
+     *                                             does not finish within the timeout
+     */
+    public <T> T execute(String operation, Supplier<T> task) {
+        Timer hashTimer = hashTimer(operation);
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return hashTimer.record(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new PasswordHashingUnavailableException("Password hashing capacity exhausted");
+        }
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new PasswordHashingUnavailableException("Password hashing timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingUnavailableException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Runs a batch of tasks on the hashing pool with at most the configured number of
+     * bulk threads busy at a time, and returns their results in order. A full queue
+     * makes this wait rather than fail, so it may take as long as the batch needs.
+     *
+     * @throws PasswordHashingUnavailableException if interrupted while waiting
+     */
+    public <T> List<T> executeAll(String operation, List<Supplier<T>> tasks) {
+        Timer hashTimer = hashTimer(operation);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Supplier<T> task : tasks) {
+                bulkPermits.acquire();
+                futures.add(submitBulk(hashTimer, task));
+            }
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingUnavailableException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Caller holds a bulk permit, which the task gives back when it is done
+    private <T> Future<T> submitBulk(Timer hashTimer, Supplier<T> task) throws InterruptedException {
+        while (true) {
+            try {
+                return executor.submit(() -> {
+                    try {
+                        return hashTimer.record(task);
+                    } finally {
+                        bulkPermits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Logins filled the queue; they go first
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private Timer hashTimer(String operation) {
+        return hashTimers.computeIfAbsent(operation, op -> Timer.builder("auth.password.hash")
+                .description("Time spent hashing or verifying a password")
+                .tag("operation", op)
+                .register(meterRegistry));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
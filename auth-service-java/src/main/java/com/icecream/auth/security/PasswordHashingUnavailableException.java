@@ -0,0 +1,12 @@
+package com.icecream.auth.security;
+
+/**
+ * Thrown when the password hashing executor is saturated and a login or register
+ * request is rejected instead of queueing behind other hashing work.
+ */
+public class PasswordHashingUnavailableException extends RuntimeException {
+
+    public PasswordHashingUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,154 @@
+package com.icecream.auth.security;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the RSA key pairs used to sign tokens.
+ * <p>
+ * A new key is generated every rotation interval. Older keys stop signing but stay
+ * published (and accepted) until every token they could have signed has expired.
+ * Keys are stored as PKCS#8 files so tokens survive a restart; the key id encodes
+ * the creation time. On POSIX file systems the files are readable by the owner only.
+ */
+@Component
+public class SigningKeyManager {
+
+    private static final String KEY_SUFFIX = ".pk8";
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    private final Path directory;
+    private final Duration rotationInterval;
+    private final Duration tokenLifetime;
+    private final Map<String, SigningKey> keys = new ConcurrentHashMap<>();
+    private final ReentrantLock rotationLock = new ReentrantLock();
+    private volatile SigningKey active;
+
+    public SigningKeyManager(
+            @Value("${application.security.jwt.keys.directory:data/keys}") Path directory,
+            @Value("${application.security.jwt.keys.rotation-interval:P7D}") Duration rotationInterval,
+            @Value("${application.security.jwt.expiration}") long jwtExpiration) {
+        this.directory = directory;
+        this.rotationInterval = rotationInterval;
+        this.tokenLifetime = Duration.ofMillis(jwtExpiration);
+    }
+
+    @PostConstruct
+    void load() throws IOException, GeneralSecurityException {
+        Files.createDirectories(directory);
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + KEY_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String kid = fileName.substring(0, fileName.length() - KEY_SUFFIX.length());
+                if (isPosix()) {
+                    Files.setPosixFilePermissions(file, OWNER_ONLY);  // tighten keys written before this was enforced
+                }
+                RSAPrivateCrtKey privateKey = (RSAPrivateCrtKey) keyFactory.generatePrivate(
+                        new PKCS8EncodedKeySpec(Files.readAllBytes(file)));
+                PublicKey publicKey = keyFactory.generatePublic(
+                        new RSAPublicKeySpec(privateKey.getModulus(), privateKey.getPublicExponent()));
+                keys.put(kid, new SigningKey(kid, createdAt(kid), new KeyPair(publicKey, privateKey)));
+            }
+        }
+        active = keys.values().stream().max(Comparator.comparingLong(SigningKey::createdAt)).orElse(null);
+        rotateIfDue();
+    }
+
+    /**
+     * Generates a new signing key once the active one is older than the rotation
+     * interval, and forgets keys that can no longer have live tokens.
+     */
+    @Scheduled(fixedDelayString = "${application.security.jwt.keys.check-interval:PT1H}")
+    public void rotateIfDue() throws IOException, GeneralSecurityException {
+        rotationLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (active == null || now - active.createdAt() >= rotationInterval.toMillis()) {
+                SigningKey generated = generate(now);
+                keys.put(generated.kid(), generated);
+                active = generated;
+                System.out.println("[auth-service] Rotated JWT signing key, kid=" + generated.kid());
+            }
+            // A key retires when its successor is created; tokens it signed live at most one lifetime after that
+            List<SigningKey> byAge = new ArrayList<>(keys.values());
+            byAge.sort(Comparator.comparingLong(SigningKey::createdAt));
+            for (int i = 0; i < byAge.size() - 1; i++) {
+                long retiredAt = byAge.get(i + 1).createdAt();
+                if (now - retiredAt > tokenLifetime.toMillis()) {
+                    SigningKey expired = byAge.get(i);
+                    keys.remove(expired.kid());
+                    Files.deleteIfExists(directory.resolve(expired.kid() + KEY_SUFFIX));
+                }
+            }
+        } finally {
+            rotationLock.unlock();
+        }
+    }
+
+    public SigningKey getActiveKey() {
+        return active;
+    }
+
+    public PublicKey getPublicKey(String kid) {
+        SigningKey key = kid == null ? null : keys.get(kid);
+        return key == null ? null : key.keyPair().getPublic();
+    }
+
+    /** Keys that may still verify live tokens, newest first. */
+    public List<SigningKey> getVerificationKeys() {
+        List<SigningKey> published = new ArrayList<>(keys.values());
+        published.sort(Comparator.comparingLong(SigningKey::createdAt).reversed());
+        return published;
+    }
+
+    private SigningKey generate(long now) throws IOException, GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        String kid = Long.toString(now, 36);
+        Path file = directory.resolve(kid + KEY_SUFFIX);
+        // Created with owner-only permissions before any key bytes are written
+        if (isPosix()) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        Files.write(file, keyPair.getPrivate().getEncoded());
+        return new SigningKey(kid, now, keyPair);
+    }
+
+    private boolean isPosix() {
+        return directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static long createdAt(String kid) {
+        return Long.parseLong(kid, 36);
+    }
+
+    public record SigningKey(String kid, long createdAt, KeyPair keyPair) {
+    }
+}
@@ -0,0 +1,219 @@
+package com.icecream.auth.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory index of revoked token ids ({@code jti}).
+ * <p>
+ * Lookups first go through a fixed-size Bloom filter, so the common case (token not
+ * revoked) is answered without touching any set. Possible hits are confirmed against
+ * exact sets bucketed by the hour the token expires. Once an hour has passed its
+ * bucket is dropped and the Bloom filter rebuilt, so memory tracks the number of
+ * revoked tokens that are still live rather than growing forever.
+ * <p>
+ * Revocations are appended to a local log and replayed on startup.
+ */
+@Component
+public class TokenRevocationIndex {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int HASH_FUNCTIONS = 4;
+
+    private final Path storePath;
+    private final int bloomBits;
+    // Hour bucket -> jti -> exact expiry, which is written back when the store is compacted
+    private final Map<Long, Map<String, Long>> bucketsByExpiryHour = new ConcurrentHashMap<>();
+    // Not synchronized: writers do file I/O and must not pin a virtual thread
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile AtomicLongArray bloom;
+
+    public TokenRevocationIndex(
+            MeterRegistry meterRegistry,
+            @Value("${application.security.revocation.store-path:data/revoked-tokens.log}") Path storePath,
+            @Value("${application.security.revocation.bloom-bits:1048576}") int bloomBits) {
+        this.storePath = storePath;
+        this.bloomBits = bloomBits;
+        this.bloom = new AtomicLongArray((bloomBits + 63) / 64);
+        Gauge.builder("auth.tokens.revoked", this, TokenRevocationIndex::size)
+                .description("Revoked tokens that have not expired yet")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        if (!Files.exists(storePath)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> lines = Files.readAllLines(storePath, StandardCharsets.UTF_8);
+        writeLock.lock();
+        try {
+            for (String line : lines) {
+                int separator = line.indexOf(' ');
+                if (separator <= 0) {
+                    continue;
+                }
+                long expiresAt = Long.parseLong(line.substring(0, separator));
+                if (expiresAt > now) {
+                    String jti = line.substring(separator + 1);
+                    index(jti, expiresAt);
+                    if (expiresAt % HOUR_MILLIS == 0) {
+                        // Earlier compactions wrote the end of the expiry hour instead of the exact expiry
+                        index(jti, expiresAt - 1);
+                    }
+                }
+            }
+            rewriteStore();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Revokes the token until its own expiry. Tokens without an id or already expired
+     * are ignored, since they can never be accepted again anyway.
+     */
+    public void revoke(VerifiedToken token) {
+        if (token.getId() == null || token.getExpiresAt() == null || token.isExpired()) {
+            return;
+        }
+        long expiresAt = token.getExpiresAt().getTime();
+        writeLock.lock();
+        try {
+            index(token.getId(), expiresAt);
+            Files.createDirectories(storePath.toAbsolutePath().getParent());
+            Files.writeString(storePath, expiresAt + " " + token.getId() + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("[auth-service] Failed to persist token revocation: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean isRevoked(VerifiedToken token) {
+        return token.getId() != null && token.getExpiresAt() != null
+                && isRevoked(token.getId(), token.getExpiresAt());
+    }
+
+    public boolean isRevoked(String jti, Date expiresAt) {
+        if (!mightContain(bloom, jti)) {
+            return false;
+        }
+        Map<String, Long> bucket = bucketsByExpiryHour.get(expiresAt.getTime() / HOUR_MILLIS);
+        return bucket != null && bucket.containsKey(jti);
+    }
+
+    /** Ids of every revoked token that hasn't expired yet. */
+    public List<String> liveIds() {
+        long currentHour = System.currentTimeMillis() / HOUR_MILLIS;
+        return bucketsByExpiryHour.entrySet().stream()
+                .filter(bucket -> bucket.getKey() >= currentHour)
+                .flatMap(bucket -> bucket.getValue().keySet().stream())
+                .toList();
+    }
+
+    public int size() {
+        return bucketsByExpiryHour.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Drops buckets whose tokens have all expired, rebuilds the Bloom filter from the
+     * remaining ids and compacts the store.
+     */
+    @Scheduled(fixedDelayString = "${application.security.revocation.purge-interval:PT10M}")
+    public void purgeExpired() {
+        long currentHour = System.currentTimeMillis() / HOUR_MILLIS;
+        writeLock.lock();
+        try {
+            if (!bucketsByExpiryHour.keySet().removeIf(hour -> hour < currentHour)) {
+                return;
+            }
+            AtomicLongArray rebuilt = new AtomicLongArray(bloom.length());
+            bucketsByExpiryHour.values().forEach(bucket -> bucket.keySet().forEach(jti -> add(rebuilt, jti)));
+            bloom = rebuilt;
+            rewriteStore();
+        } catch (IOException e) {
+            System.err.println("[auth-service] Failed to compact token revocation store: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void index(String jti, long expiresAt) {
+        bucketsByExpiryHour.computeIfAbsent(expiresAt / HOUR_MILLIS, hour -> new ConcurrentHashMap<>()).put(jti, expiresAt);
+        add(bloom, jti);
+    }
+
+    private void rewriteStore() throws IOException {
+        Files.createDirectories(storePath.toAbsolutePath().getParent());
+        Path tmp = storePath.resolveSibling(storePath.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map<String, Long> bucket : bucketsByExpiryHour.values()) {
+                for (Map.Entry<String, Long> revoked : bucket.entrySet()) {
+                    writer.write(revoked.getValue() + " " + revoked.getKey());
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(tmp, storePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void add(AtomicLongArray bits, String jti) {
+        long hash = hash64(jti);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            long mask = 1L << (bit & 63);
+            int word = bit >>> 6;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    private boolean mightContain(AtomicLongArray bits, String jti) {
+        long hash = hash64(jti);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            if ((bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 64-bit FNV-1a; the two halves feed the double hashing above
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
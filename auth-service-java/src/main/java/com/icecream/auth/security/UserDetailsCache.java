@@ -0,0 +1,51 @@
+package com.icecream.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded, time-limited cache in front of {@link UserDetailsService} for the few
+ * paths that still need the user entity (tokens issued without id/role claims).
+ * Login keeps going to the database so password checks always see fresh data.
+ */
+@Component
+public class UserDetailsCache {
+
+    private final UserDetailsService userDetailsService;
+    private final boolean enabled;
+    private final Cache<String, UserDetails> cache;
+
+    public UserDetailsCache(
+            UserDetailsService userDetailsService,
+            @Value("${application.security.user-cache.enabled:true}") boolean enabled,
+            @Value("${application.security.user-cache.max-size:10000}") long maxSize,
+            @Value("${application.security.user-cache.ttl:5m}") Duration ttl) {
+        this.userDetailsService = userDetailsService;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public UserDetails get(String email) {
+        if (!enabled) {
+            return userDetailsService.loadUserByUsername(email);
+        }
+        return cache.get(email, userDetailsService::loadUserByUsername);
+    }
+
+    public void invalidate(String email) {
+        cache.invalidate(email);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
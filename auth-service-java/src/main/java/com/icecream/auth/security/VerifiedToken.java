@@ -0,0 +1,39 @@
+package com.icecream.auth.security;
+
+import io.jsonwebtoken.Claims;
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable view of a JWT whose signature and expiration have already been checked.
+ */
+@Value
+public class VerifiedToken {
+
+    String id;
+    String subject;
+    Date issuedAt;
+    Date expiresAt;
+    Map<String, Object> claims;
+
+    static VerifiedToken from(Claims claims) {
+        return new VerifiedToken(
+                claims.getId(),
+                claims.getSubject(),
+                claims.getIssuedAt(),
+                claims.getExpiration(),
+                Collections.unmodifiableMap(new HashMap<>(claims)));
+    }
+
+    public Object getClaim(String name) {
+        return claims.get(name);
+    }
+
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.before(new Date());
+    }
+}
@@ -1,26 +1,43 @@
 package com.icecream.auth.service;
 
+import com.icecream.auth.client.UserProfileClient;
 import com.icecream.auth.dto.AuthRequest;
 import com.icecream.auth.dto.AuthResponse;
 import com.icecream.auth.dto.RegisterRequest;
+import com.icecream.auth.dto.ServiceTokenRequest;
+import com.icecream.auth.dto.ServiceTokenResponse;
 import com.icecream.auth.model.Role;
 import com.icecream.auth.model.User;
 import com.icecream.auth.repository.UserRepository;
+import com.icecream.auth.security.AuthenticatedUser;
 import com.icecream.auth.security.JwtService;
+import com.icecream.auth.security.TokenRevocationIndex;
+import com.icecream.auth.security.UserDetailsCache;
+import com.icecream.auth.security.VerifiedToken;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
 public class AuthenticationService {
         private final UserRepository repository;
         private final PasswordEncoder passwordEncoder;
         private final JwtService jwtService;
+        private final UserDetailsCache userDetailsCache;
+        private final TokenRevocationIndex revocationIndex;
         private final AuthenticationManager authenticationManager;
-        private final org.springframework.web.client.RestTemplate restTemplate;
+        private final UserProfileClient userProfileClient;
+        private final Environment environment;
 
         public AuthResponse register(RegisterRequest request) {
                 // Check if user already exists
@@ -34,64 +51,114 @@ public class AuthenticationService {
                                 .role(Role.USER)
                                 .build();
                 repository.save(user);
+                userDetailsCache.invalidate(user.getEmail());
                 System.out.println("[auth-service] Registered user: " + request.getEmail());
 
+                var jwtToken = jwtService.generateToken(tokenClaims(user), user);
+                System.out.println("[auth-service] Generated JWT for user: " + request.getEmail());
+
                 // Call user-service to create profile (async, non-blocking)
-                try {
-                        String userServiceUrl = "http://user-service:8082/api/users";
-                        java.util.Map<String, String> profileData = new java.util.HashMap<>();
-                        profileData.put("email", request.getEmail());
-                        profileData.put("firstName", request.getFirstName());
-                        profileData.put("lastName", request.getLastName());
-                        restTemplate.postForObject(userServiceUrl, profileData, Object.class);
-                } catch (Exception e) {
-                        // Log but don't fail registration - user profile can be created later
-                        System.err.println("Failed to create user profile: " + e.getMessage());
-                }
+                userProfileClient.createProfile(request, jwtToken);
 
-                var jwtToken = jwtService.generateToken(user);
-                System.out.println("[auth-service] Generated JWT for user: " + request.getEmail());
                 return AuthResponse.builder()
                                 .token(jwtToken)
                                 .build();
         }
 
         public AuthResponse authenticate(AuthRequest request) {
-                authenticationManager.authenticate(
+                var authentication = authenticationManager.authenticate(
                                 new UsernamePasswordAuthenticationToken(
                                                 request.getEmail(),
                                                 request.getPassword()));
-                var user = repository.findByEmail(request.getEmail())
-                                .orElseThrow(() -> new RuntimeException("User not found"));
-                var jwtToken = jwtService.generateToken(user);
+                // The provider already loaded the user to check the password
+                var user = (User) authentication.getPrincipal();
+                var jwtToken = jwtService.generateToken(tokenClaims(user), user);
                 return AuthResponse.builder()
                                 .token(jwtToken)
                                 .build();
         }
 
+        /**
+         * Issues a service token if the client's secret matches the one configured under
+         * {@code application.security.service-clients.clients.<client-id>.secret}.
+         * Clients without a configured secret are refused.
+         */
+        public Optional<ServiceTokenResponse> issueServiceToken(ServiceTokenRequest request) {
+                if (request.getClientId() == null || request.getClientSecret() == null) {
+                        return Optional.empty();
+                }
+                String expected = environment.getProperty(
+                                "application.security.service-clients.clients." + request.getClientId() + ".secret");
+                if (expected == null || expected.isEmpty() || !MessageDigest.isEqual(
+                                expected.getBytes(StandardCharsets.UTF_8),
+                                request.getClientSecret().getBytes(StandardCharsets.UTF_8))) {
+                        return Optional.empty();
+                }
+                return Optional.of(ServiceTokenResponse.builder()
+                                .token(jwtService.generateServiceToken(request.getClientId()))
+                                .expiresInSeconds(jwtService.getServiceTokenLifetime().toSeconds())
+                                .build());
+        }
+
         public boolean validateToken(String token) {
-                final String userEmail = jwtService.extractUsername(token);
-                if (userEmail != null) {
-                        var user = repository.findByEmail(userEmail).orElse(null);
-                        if (user != null) {
-                                return jwtService.isTokenValid(token, user);
-                        }
-                    }
-                return false;
+                final VerifiedToken verified;
+                try {
+                        verified = jwtService.verify(token);
+                } catch (JwtException e) {
+                        return false;
+                }
+                if (verified.getSubject() == null || revocationIndex.isRevoked(verified)) {
+                        return false;
+                }
+                if (AuthenticatedUser.fromToken(verified) != null) {
+                        // Signature and expiry are checked by verify(); no database lookup needed
+                        return true;
+                }
+                try {
+                        return jwtService.isTokenValid(verified, userDetailsCache.get(verified.getSubject()));
+                } catch (UsernameNotFoundException e) {
+                        return false;
+                }
         }
 
         public java.util.Map<String, Object> getUserFromToken(String token) {
-                final String userEmail = jwtService.extractUsername(token);
-                if (userEmail != null) {
-                        var user = repository.findByEmail(userEmail).orElse(null);
-                        if (user != null) {
-                                java.util.Map<String, Object> info = new java.util.HashMap<>();
-                                info.put("id", user.getId());
-                                info.put("email", user.getEmail());
-                                info.put("role", user.getRole() != null ? user.getRole().name() : null);
-                                return info;
+                final VerifiedToken verified = jwtService.verify(token);
+                AuthenticatedUser principal = AuthenticatedUser.fromToken(verified);
+                if (principal == null && verified.getSubject() != null) {
+                        try {
+                                var details = userDetailsCache.get(verified.getSubject());
+                                if (details instanceof User user) {
+                                        principal = new AuthenticatedUser(user.getId(), user.getEmail(), user.getRole());
+                                }
+                        } catch (UsernameNotFoundException e) {
+                                return null;
                         }
                 }
-                return null;
+                if (principal == null) {
+                        return null;
+                }
+                java.util.Map<String, Object> info = new java.util.HashMap<>();
+                info.put("id", principal.getId());
+                info.put("email", principal.getEmail());
+                info.put("role", principal.getRole() != null ? principal.getRole().name() : null);
+                return info;
+        }
+
+        /**
+         * Revokes the token so it is rejected until it expires. Invalid tokens are ignored.
+         */
+        public void logout(String token) {
+                try {
+                        revocationIndex.revoke(jwtService.verify(token));
+                } catch (JwtException e) {
+                        // Nothing to revoke: the token is already unusable
+                }
+        }
+
+        private java.util.Map<String, Object> tokenClaims(User user) {
+                java.util.Map<String, Object> claims = new java.util.HashMap<>();
+                claims.put(AuthenticatedUser.USER_ID_CLAIM, user.getId());
+                claims.put(AuthenticatedUser.ROLE_CLAIM, user.getRole().name());
+                return claims;
         }
 }
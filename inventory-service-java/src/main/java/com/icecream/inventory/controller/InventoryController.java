@@ -1,16 +1,75 @@
 package com.icecream.inventory.controller;
 
+import com.icecream.inventory.dto.JournalReplayReport;
+import com.icecream.inventory.dto.ReservationRequest;
+import com.icecream.inventory.dto.StockAdjustment;
+import com.icecream.inventory.dto.StockChangeBatch;
+import com.icecream.inventory.dto.StockShortage;
 import com.icecream.inventory.model.InventoryItem;
+import com.icecream.inventory.model.StockReservation;
+import com.icecream.inventory.service.InsufficientStockException;
 import com.icecream.inventory.service.InventoryService;
+import com.icecream.inventory.service.ReservationNotFoundException;
+import com.icecream.inventory.service.StockChangeFeed;
+import com.icecream.inventory.service.StockReservationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/inventory")
 @RequiredArgsConstructor
 public class InventoryController {
     private final InventoryService service;
+    private final StockReservationService reservationService;
+    private final StockChangeFeed changeFeed;
+
+    /** Stock of several products, e.g. {@code ?productIds=vanilla,chocolate}; unknown products are left out. */
+    @GetMapping
+    public ResponseEntity<List<InventoryItem>> getStocks(@RequestParam List<String> productIds) {
+        return ResponseEntity.ok(service.getStocks(productIds));
+    }
+
+    /**
+     * Stock changes after version {@code since}, oldest first. With {@code wait}
+     * (e.g. {@code PT20S}) the request is held until there is at least one change or
+     * the time is up; either way, ask again from the returned {@code version}.
+     */
+    @GetMapping("/changes")
+    public DeferredResult<StockChangeBatch> getChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "0") int limit,
+            @RequestParam(defaultValue = "PT0S") Duration wait) {
+        return changeFeed.poll(since, limit, wait);
+    }
+
+    /**
+     * Streams every change after {@code since} as {@code stock-change} events with
+     * the version as event id, so a reconnecting client resumes with {@code Last-Event-ID}.
+     */
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(
+            @RequestParam(required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = changeFeed.subscribe(lastEventId != null ? lastEventId : since == null ? 0 : since);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")  // don't let proxies buffer the stream
+                .body(emitter);
+    }
 
     @GetMapping("/{productId}")
     public ResponseEntity<InventoryItem> getStock(@PathVariable String productId) {
@@ -19,8 +78,72 @@ public class InventoryController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @PostMapping("/adjust")
+    public ResponseEntity<List<InventoryItem>> adjustStockBatch(@RequestBody List<StockAdjustment> adjustments) {
+        return ResponseEntity.ok(service.adjustStock(adjustments));
+    }
+
     @PostMapping("/{productId}/adjust")
-    public ResponseEntity<InventoryItem> adjustStock(@PathVariable String productId, @RequestParam int adjustment) {
-        return ResponseEntity.ok(service.updateStock(productId, adjustment));
+    public ResponseEntity<InventoryItem> adjustStock(@PathVariable String productId, @RequestParam int adjustment,
+                                                     @RequestParam(required = false) String reference) {
+        return ResponseEntity.ok(service.updateStock(productId, adjustment, reference));
+    }
+
+    /**
+     * Rebuilds stock from the stock journal and reports each product where it differs;
+     * with {@code apply=true} the journal's stock is written back.
+     */
+    @PostMapping("/journal/replay")
+    public ResponseEntity<JournalReplayReport> replayJournal(@RequestParam(defaultValue = "false") boolean apply)
+            throws IOException {
+        return ResponseEntity.ok(service.replayJournal(apply));
+    }
+
+    @PostMapping("/reservations")
+    public ResponseEntity<StockReservation> reserve(@RequestBody ReservationRequest request) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(reservationService.reserve(request.getItems(), request.getTtl()));
+    }
+
+    @GetMapping("/reservations/{reservationId}")
+    public ResponseEntity<StockReservation> getReservation(@PathVariable String reservationId) {
+        return ResponseEntity.ok(reservationService.getReservation(reservationId));
+    }
+
+    @PostMapping("/reservations/{reservationId}/commit")
+    public ResponseEntity<StockReservation> commitReservation(@PathVariable String reservationId) {
+        return ResponseEntity.ok(reservationService.commit(reservationId));
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    public ResponseEntity<Void> releaseReservation(@PathVariable String reservationId) {
+        reservationService.release(reservationId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * A decrement or reservation beyond the available stock: nothing was applied, and
+     * the body lists each short product with what was asked for and what is available.
+     */
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<List<StockShortage>> insufficientStock(InsufficientStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getShortages());
+    }
+
+    /** Already committed, released or expired, or never made. */
+    @ExceptionHandler(ReservationNotFoundException.class)
+    public ResponseEntity<String> reservationNotFound(ReservationNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    /** E.g. a journal replay while the journal is disabled. */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
 }
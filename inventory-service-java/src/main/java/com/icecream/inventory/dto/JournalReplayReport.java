@@ -0,0 +1,35 @@
+package com.icecream.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of replaying the stock journal: how fast it went, and each product whose
+ * journaled stock differs from what the service holds.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JournalReplayReport {
+    private long entries;
+    private int products;
+    private long millis;
+    private long entriesPerSecond;
+    private List<Mismatch> mismatches;
+    private boolean applied;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Mismatch {
+        private String productId;
+        private long journal;
+        private long current;
+    }
+}
@@ -0,0 +1,22 @@
+package com.icecream.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Units to hold, with positive quantities, and for how long (ISO-8601, e.g.
+ * {@code PT10M}); the configured default TTL applies when it is omitted.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationRequest {
+    private List<StockAdjustment> items;
+    private Duration ttl;
+}
@@ -0,0 +1,17 @@
+package com.icecream.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockAdjustment {
+    private String productId;
+    private int quantity;
+    // Optional, e.g. an order id; kept with the movement in the stock journal
+    private String reference;
+}
@@ -0,0 +1,22 @@
+package com.icecream.inventory.dto;
+
+import com.icecream.inventory.model.StockChange;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Changes after the requested version, oldest first. {@code version} is what to
+ * ask for next: the last change's version, or the requested one if there were none.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockChangeBatch {
+    private List<StockChange> changes;
+    private long version;
+}
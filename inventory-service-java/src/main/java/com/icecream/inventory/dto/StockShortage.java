@@ -0,0 +1,20 @@
+package com.icecream.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A decrement or reservation that was refused because the product hasn't that many
+ * units available, i.e. on hand and not held by a reservation.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockShortage {
+    private String productId;
+    private int requested;
+    private int available;
+}
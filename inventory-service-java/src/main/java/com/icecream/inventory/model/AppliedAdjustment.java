@@ -0,0 +1,42 @@
+package com.icecream.inventory.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Marks a referenced adjustment as applied to one product. The key makes a
+ * retried delivery of the same adjustment (e.g. from order-service's outbox) a
+ * no-op; rows are purged once retries can no longer arrive.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@IdClass(AppliedAdjustment.Key.class)
+@Table(name = "applied_adjustments",
+        indexes = @Index(name = "idx_applied_adjustments_applied_at", columnList = "appliedAt"))
+public class AppliedAdjustment {
+
+    @Id
+    private String reference;
+
+    @Id
+    private String productId;
+
+    private LocalDateTime appliedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String reference;
+        private String productId;
+    }
+}
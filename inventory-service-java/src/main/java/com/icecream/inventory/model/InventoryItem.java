@@ -7,7 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
@@ -22,5 +22,11 @@ public class InventoryItem {
     private String productId;
 
     private Integer stockCount;
+    // Units held by active reservations: on hand, but not available
+    private Integer reservedCount;
     private String location;
+
+    public int getAvailableCount() {
+        return Math.max(0, (stockCount == null ? 0 : stockCount) - (reservedCount == null ? 0 : reservedCount));
+    }
 }
@@ -0,0 +1,17 @@
+package com.icecream.inventory.model;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class ReservedItem {
+    private String productId;
+    private int quantity;
+}
@@ -0,0 +1,41 @@
+package com.icecream.inventory.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A product's stock as of one change. Versions increase with every change across
+ * all products; older changes of a product are compacted away once a newer one
+ * exists and the retention window has passed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "stock_changes", indexes = {
+        @Index(name = "idx_stock_changes_product_version", columnList = "productId, version"),
+        @Index(name = "idx_stock_changes_changed_at", columnList = "changedAt")
+})
+public class StockChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long version;
+
+    @Column(nullable = false)
+    private String productId;
+
+    private Integer stockCount;
+    private Integer reservedCount;
+    private LocalDateTime changedAt;
+
+    public int getAvailableCount() {
+        return Math.max(0, (stockCount == null ? 0 : stockCount) - (reservedCount == null ? 0 : reservedCount));
+    }
+}
@@ -0,0 +1,30 @@
+package com.icecream.inventory.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single row recording the last stock-ledger log record whose delta is included in
+ * {@code inventory_items}. Records after it are replayed on startup.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "stock_ledger_checkpoint")
+public class StockLedgerCheckpoint {
+
+    public static final long SINGLETON_ID = 1L;
+
+    @Id
+    private Long id;
+
+    private long lastSeq;
+    private LocalDateTime flushedAt;
+}
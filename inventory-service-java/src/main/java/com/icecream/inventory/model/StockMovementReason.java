@@ -0,0 +1,16 @@
+package com.icecream.inventory.model;
+
+/**
+ * Why a product's on-hand stock moved, as recorded in the stock journal. The
+ * ordinal is stored, so new reasons go at the end.
+ */
+public enum StockMovementReason {
+    /** Stock the product had when the journal was started. */
+    OPENING_BALANCE,
+    ADJUSTMENT,
+    RESERVATION_COMMITTED,
+    /** Hot products only: held units leave the ledger. */
+    RESERVATION_HELD,
+    /** Hot products only: released or expired units go back to the ledger. */
+    RESERVATION_RELEASED
+}
@@ -0,0 +1,36 @@
+package com.icecream.inventory.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Units held for a checkout until it is committed, released or expires. Only
+ * active reservations have a row; their units are counted in
+ * {@link InventoryItem#getReservedCount()}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "stock_reservations", indexes = {
+        @Index(name = "idx_stock_reservations_expires_at", columnList = "expiresAt")
+})
+public class StockReservation {
+
+    @Id
+    private String id;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "stock_reservation_items", joinColumns = @JoinColumn(name = "reservation_id"))
+    private List<ReservedItem> items;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+}
@@ -2,8 +2,13 @@ package com.icecream.inventory.repository;
 
 import com.icecream.inventory.model.InventoryItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface InventoryRepository extends JpaRepository<InventoryItem, Long> {
     Optional<InventoryItem> findByProductId(String productId);
+
+    List<InventoryItem> findByProductIdIn(Collection<String> productIds);
 }
@@ -0,0 +1,7 @@
+package com.icecream.inventory.repository;
+
+import com.icecream.inventory.model.StockLedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StockLedgerCheckpointRepository extends JpaRepository<StockLedgerCheckpoint, Long> {
+}
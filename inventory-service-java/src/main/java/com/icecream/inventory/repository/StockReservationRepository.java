@@ -0,0 +1,17 @@
+package com.icecream.inventory.repository;
+
+import com.icecream.inventory.model.StockReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, String> {
+
+    /** Locks the reservation row so only one of commit, release and expiry can settle it. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.id = :id")
+    Optional<StockReservation> findForUpdate(String id);
+}
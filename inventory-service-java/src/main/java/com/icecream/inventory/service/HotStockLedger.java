@@ -0,0 +1,334 @@
+package com.icecream.inventory.service;
+
+import com.icecream.inventory.dto.StockShortage;
+import com.icecream.inventory.model.StockLedgerCheckpoint;
+import com.icecream.inventory.repository.StockLedgerCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory stock for designated hot products, so flash-sale traffic on a few
+ * flavors doesn't queue on their {@code inventory_items} rows.
+ * <p>
+ * Each product's available units are spread over striped shards. A decrement
+ * takes from one shard with a compare-and-set, trying the others if it is short;
+ * only when no single shard can cover it are the shards drained, the request
+ * served from the total, and the rest spread evenly again under a per-product
+ * lock. Units never go below zero.
+ * <p>
+ * Every applied delta is written to a {@link StockDeltaLog} and made durable
+ * before the caller returns. Net deltas are added to MySQL in periodic batches
+ * together with the log position they cover, and the log files before it are then
+ * deleted. On startup the log records after that position are applied to MySQL
+ * first, and the shards are loaded from the resulting stock.
+ * <p>
+ * All stock changes of a hot product must go through this ledger, and only one
+ * instance may run it.
+ */
+@Component
+@DependsOn("entityManagerFactory")  // Hibernate creates the tables first
+public class HotStockLedger {
+
+    private static final String ENSURE_PRODUCT =
+            "INSERT IGNORE INTO inventory_items (product_id, stock_count) VALUES (?, 0)";
+    private static final String ADD_STOCK =
+            "INSERT INTO inventory_items (product_id, stock_count) VALUES (?, ?) "
+                    + "ON DUPLICATE KEY UPDATE stock_count = COALESCE(stock_count, 0) + VALUES(stock_count)";
+    private static final String UPSERT_CHECKPOINT =
+            "INSERT INTO stock_ledger_checkpoint (id, last_seq, flushed_at) VALUES (?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE last_seq = GREATEST(last_seq, VALUES(last_seq)), "
+                    + "flushed_at = VALUES(flushed_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StockLedgerCheckpointRepository checkpointRepository;
+    private final StockChangeFeed changeFeed;
+    private final boolean enabled;
+    private final Set<String> products;
+    private final int shardCount;
+    private final Path logDirectory;
+    private final boolean fsync;
+
+    private Map<String, ShardedStock> stocks = Map.of();
+    private StockDeltaLog log;
+
+    public HotStockLedger(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            StockLedgerCheckpointRepository checkpointRepository,
+            StockChangeFeed changeFeed,
+            @Value("${application.inventory.hot-stock.enabled:false}") boolean enabled,
+            @Value("${application.inventory.hot-stock.products:}") List<String> products,
+            @Value("${application.inventory.hot-stock.shards:16}") int shardCount,
+            @Value("${application.inventory.hot-stock.log-directory:data/stock-ledger}") Path logDirectory,
+            @Value("${application.inventory.hot-stock.fsync:true}") boolean fsync) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.checkpointRepository = checkpointRepository;
+        this.changeFeed = changeFeed;
+        this.enabled = enabled;
+        this.products = products.stream().map(String::trim).filter(id -> !id.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.shardCount = shardCount;
+        this.logDirectory = logDirectory;
+        this.fsync = fsync;
+    }
+
+    @PostConstruct
+    void rebuild() throws IOException {
+        // Deltas logged by a previous run but not yet flushed go to MySQL first, even
+        // for products no longer configured as hot
+        long checkpoint = checkpointRepository.findById(StockLedgerCheckpoint.SINGLETON_ID)
+                .map(StockLedgerCheckpoint::getLastSeq)
+                .orElse(0L);
+        StockDeltaLog.Replay replay = StockDeltaLog.replay(logDirectory, checkpoint);
+        if (!replay.deltas().isEmpty()) {
+            persist(replay.deltas(), replay.lastSeq());
+            System.out.println("[inventory-service] Replayed stock ledger: " + replay.deltas().size()
+                    + " products, up to record " + replay.lastSeq());
+        }
+        for (Path file : StockDeltaLog.files(logDirectory)) {
+            Files.delete(file);
+        }
+        if (!enabled || products.isEmpty()) {
+            return;
+        }
+
+        log = StockDeltaLog.open(logDirectory, fsync, replay.lastSeq());
+        Map<String, ShardedStock> loaded = new LinkedHashMap<>();
+        for (String productId : products) {
+            jdbcTemplate.update(ENSURE_PRODUCT, productId);
+            Integer stock = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(stock_count, 0) FROM inventory_items WHERE product_id = ?", Integer.class,
+                    productId);
+            loaded.put(productId, new ShardedStock(shardCount, Math.max(0, stock == null ? 0 : stock)));
+        }
+        stocks = Map.copyOf(loaded);
+        System.out.println("[inventory-service] Hot stock ledger serving " + stocks.keySet() + " with "
+                + shardCount + " shards each");
+    }
+
+    public boolean isHot(String productId) {
+        return stocks.containsKey(productId);
+    }
+
+    /** Units currently available, or null if the product isn't hot. */
+    public Integer available(String productId) {
+        ShardedStock stock = stocks.get(productId);
+        return stock == null ? null : (int) stock.available();
+    }
+
+    /**
+     * Applies deltas to hot products, all or none, and returns once they are durable.
+     *
+     * @throws InsufficientStockException if a decrement exceeds what is available
+     */
+    public void apply(SortedMap<String, Integer> deltas) {
+        List<Map.Entry<String, Integer>> taken = new ArrayList<>();
+        List<StockShortage> shortages = new ArrayList<>();
+        for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+            ShardedStock stock = stocks.get(delta.getKey());
+            if (delta.getValue() >= 0 || stock.tryTake(-delta.getValue())) {
+                taken.add(delta);
+            } else {
+                shortages.add(new StockShortage(delta.getKey(), -delta.getValue(), (int) stock.available()));
+            }
+        }
+        if (!shortages.isEmpty()) {
+            taken.forEach(delta -> {
+                if (delta.getValue() < 0) {
+                    stocks.get(delta.getKey()).add(-delta.getValue());
+                }
+            });
+            throw new InsufficientStockException(shortages);
+        }
+        long seq = 0;
+        for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+            if (delta.getValue() > 0) {
+                stocks.get(delta.getKey()).add(delta.getValue());
+            }
+            seq = log.append(delta.getKey(), delta.getValue());
+        }
+        try {
+            log.sync(seq);
+        } catch (IOException e) {
+            // The deltas stay applied in memory and are flushed with the rest
+            throw new UncheckedIOException("Stock ledger log write failed", e);
+        }
+    }
+
+    /**
+     * Undoes deltas applied by {@link #apply(SortedMap)}, e.g. when the rest of the
+     * request failed. Units sold in the meantime can't be taken back; that is logged.
+     */
+    public void revert(SortedMap<String, Integer> deltas) {
+        long seq = 0;
+        for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+            ShardedStock stock = stocks.get(delta.getKey());
+            if (delta.getValue() < 0) {
+                stock.add(-delta.getValue());
+            } else if (!stock.tryTake(delta.getValue())) {
+                System.err.println("Could not revert +" + delta.getValue() + " for hot product " + delta.getKey()
+                        + ": already sold");
+                continue;
+            }
+            seq = log.append(delta.getKey(), -delta.getValue());
+        }
+        try {
+            log.sync(seq);
+        } catch (IOException e) {
+            System.err.println("Stock ledger log write failed while reverting: " + e.getMessage());
+        }
+    }
+
+    /** Adds the net deltas since the last flush to MySQL in one batch. */
+    @Scheduled(fixedDelayString = "${application.inventory.hot-stock.flush-interval:PT1S}")
+    public void flush() {
+        if (log == null) {
+            return;
+        }
+        StockDeltaLog.Checkpoint checkpoint;
+        try {
+            checkpoint = log.checkpoint();
+        } catch (IOException e) {
+            System.err.println("Stock ledger checkpoint failed: " + e.getMessage());
+            return;
+        }
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            persist(checkpoint.deltas(), checkpoint.seq());
+        } catch (RuntimeException e) {
+            log.restore(checkpoint.deltas());
+            System.err.println("Stock ledger flush failed, will retry: " + e.getMessage());
+            return;
+        }
+        try {
+            log.delete(checkpoint.closedFiles());
+        } catch (IOException e) {
+            System.err.println("Failed to delete flushed stock ledger files: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        flush();
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private void persist(Map<String, Long> deltas, long seq) {
+        List<Object[]> rows = deltas.entrySet().stream()
+                .filter(delta -> delta.getValue() != 0)
+                .sorted(Map.Entry.comparingByKey())
+                .map(delta -> new Object[] { delta.getKey(), delta.getValue() })
+                .toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(ADD_STOCK, rows);
+            changeFeed.record(deltas.keySet());
+            jdbcTemplate.update(UPSERT_CHECKPOINT, StockLedgerCheckpoint.SINGLETON_ID, seq,
+                    Timestamp.valueOf(LocalDateTime.now()));
+        });
+    }
+
+    /**
+     * A counter split over shards that sit on separate cache lines, so threads
+     * decrementing different shards don't contend.
+     */
+    static final class ShardedStock {
+        private static final int STRIDE = 8;  // longs per shard: 64 bytes apart
+
+        private final AtomicLongArray slots;
+        private final int shards;
+        private final ReentrantLock rebalanceLock = new ReentrantLock();
+
+        ShardedStock(int shards, long units) {
+            this.shards = shards;
+            this.slots = new AtomicLongArray(shards * STRIDE);
+            spread(units);
+        }
+
+        boolean tryTake(long units) {
+            int start = ThreadLocalRandom.current().nextInt(shards);
+            for (int i = 0; i < shards; i++) {
+                if (tryTakeFrom((start + i) % shards, units)) {
+                    return true;
+                }
+            }
+            return rebalanceAndTake(units);
+        }
+
+        void add(long units) {
+            slots.getAndAdd(ThreadLocalRandom.current().nextInt(shards) * STRIDE, units);
+        }
+
+        long available() {
+            long total = 0;
+            for (int shard = 0; shard < shards; shard++) {
+                total += slots.get(shard * STRIDE);
+            }
+            return total;
+        }
+
+        private boolean tryTakeFrom(int shard, long units) {
+            int index = shard * STRIDE;
+            long current;
+            do {
+                current = slots.get(index);
+                if (current < units) {
+                    return false;
+                }
+            } while (!slots.compareAndSet(index, current, current - units));
+            return true;
+        }
+
+        // No shard could cover the request on its own: pool them, take from the total, spread the rest
+        private boolean rebalanceAndTake(long units) {
+            rebalanceLock.lock();
+            try {
+                long total = 0;
+                for (int shard = 0; shard < shards; shard++) {
+                    total += slots.getAndSet(shard * STRIDE, 0);
+                }
+                boolean taken = total >= units;
+                spread(taken ? total - units : total);
+                return taken;
+            } finally {
+                rebalanceLock.unlock();
+            }
+        }
+
+        private void spread(long units) {
+            long each = units / shards;
+            long remainder = units % shards;
+            for (int shard = 0; shard < shards; shard++) {
+                slots.getAndAdd(shard * STRIDE, each + (shard < remainder ? 1 : 0));
+            }
+        }
+    }
+}
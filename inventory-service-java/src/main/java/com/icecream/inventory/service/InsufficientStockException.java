@@ -0,0 +1,16 @@
+package com.icecream.inventory.service;
+
+import com.icecream.inventory.dto.StockShortage;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class InsufficientStockException extends RuntimeException {
+    private final List<StockShortage> shortages;
+
+    public InsufficientStockException(List<StockShortage> shortages) {
+        super("Insufficient stock for " + shortages.stream().map(StockShortage::getProductId).toList());
+        this.shortages = shortages;
+    }
+}
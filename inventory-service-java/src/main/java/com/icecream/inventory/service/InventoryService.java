@@ -1,25 +1,312 @@
 package com.icecream.inventory.service;
 
+import com.icecream.inventory.dto.JournalReplayReport;
+import com.icecream.inventory.dto.StockAdjustment;
+import com.icecream.inventory.dto.StockShortage;
+import com.icecream.inventory.model.AppliedAdjustment;
 import com.icecream.inventory.model.InventoryItem;
+import com.icecream.inventory.model.StockMovementReason;
 import com.icecream.inventory.repository.InventoryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class InventoryService {
+    // Applied in the database so concurrent adjustments can't overwrite each other; the
+    // condition keeps stock at or above what reservations hold, and a refused decrement
+    // matches no row
+    private static final String ADJUST_STOCK =
+            "UPDATE inventory_items SET stock_count = COALESCE(stock_count, 0) + ? "
+                    + "WHERE product_id = ? AND COALESCE(stock_count, 0) - COALESCE(reserved_count, 0) + ? >= 0";
+    // Unknown products are created with the (non-negative) delta as their stock
+    private static final String INSERT_STOCK =
+            "INSERT INTO inventory_items (product_id, stock_count) VALUES (?, ?) "
+                    + "ON DUPLICATE KEY UPDATE stock_count = COALESCE(stock_count, 0) + VALUES(stock_count)";
+
+    // Ignored (0 rows) if this reference was already applied to the product
+    private static final String CLAIM_REFERENCE =
+            "INSERT IGNORE INTO applied_adjustments (reference, product_id, applied_at) VALUES (?, ?, ?)";
+    private static final String PURGE_REFERENCES = "DELETE FROM applied_adjustments WHERE applied_at < ? LIMIT ?";
+    private static final int PURGE_BATCH_SIZE = 10000;
+
     private final InventoryRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final HotStockLedger hotStock;
+    private final StockCache stockCache;
+    private final StockChangeFeed changeFeed;
+    private final StockJournal journal;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${application.inventory.stock-lookup.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${application.inventory.adjustments.reference-retention:P30D}")
+    private Period referenceRetention;
 
-    public InventoryItem updateStock(String productId, int quantityChange) {
-        InventoryItem item = repository.findByProductId(productId)
-                .orElse(InventoryItem.builder().productId(productId).stockCount(0).build());
-        item.setStockCount(item.getStockCount() + quantityChange);
-        return repository.save(item);
+    /**
+     * A change with a reference that was already applied to the product is skipped,
+     * so retried deliveries don't move stock twice.
+     *
+     * @throws InsufficientStockException if the change would take the product below its reserved units
+     */
+    @Transactional
+    public InventoryItem updateStock(String productId, int quantityChange, String reference) {
+        if (reference != null && !claimReference(reference, productId, Timestamp.valueOf(LocalDateTime.now()))) {
+            return getStock(productId).orElseThrow();
+        }
+        if (hotStock.isHot(productId)) {
+            SortedMap<String, Integer> hot = new TreeMap<>(Map.of(productId, quantityChange));
+            hotStock.apply(hot);
+            revertOnRollback(hot);
+        } else {
+            applyDeltas(new TreeMap<>(Map.of(productId, quantityChange)));
+            changeFeed.record(List.of(productId));
+        }
+        stockCache.invalidate(List.of(productId));
+        journal.record(productId, quantityChange, StockMovementReason.ADJUSTMENT, reference);
+        return withLedgerStock(repository.findByProductId(productId).orElseThrow());
+    }
+
+    /**
+     * Applies all adjustments in one transaction: either every delta is applied or
+     * none is. Deltas for the same product are merged, and rows are touched in
+     * product id order, so concurrent batches lock rows in the same order and cannot
+     * deadlock. Adjustments whose reference was already applied to their product
+     * are skipped, so a retried delivery of the same batch doesn't move stock twice.
+     *
+     * @throws InsufficientStockException if any product would go below its reserved units; nothing is applied
+     */
+    @Transactional
+    public List<InventoryItem> adjustStock(List<StockAdjustment> adjustments) {
+        Set<String> productIds = adjustments.stream()
+                .map(StockAdjustment::getProductId)
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        adjustments = firstApplications(adjustments);
+        SortedMap<String, Integer> deltas = new TreeMap<>();
+        for (StockAdjustment adjustment : adjustments) {
+            deltas.merge(adjustment.getProductId(), adjustment.getQuantity(), Integer::sum);
+        }
+        SortedMap<String, Integer> cold = new TreeMap<>();
+        SortedMap<String, Integer> hot = new TreeMap<>();
+        deltas.forEach((productId, delta) -> (hotStock.isHot(productId) ? hot : cold).put(productId, delta));
+        if (!cold.isEmpty()) {
+            applyDeltas(cold);
+            changeFeed.record(cold.keySet());
+            stockCache.invalidate(cold.keySet());
+        }
+        if (!hot.isEmpty()) {
+            // Last, so a refusal here only has database changes to roll back
+            hotStock.apply(hot);
+            revertOnRollback(hot);
+        }
+        for (StockAdjustment adjustment : adjustments) {
+            journal.record(adjustment.getProductId(), adjustment.getQuantity(), StockMovementReason.ADJUSTMENT,
+                    adjustment.getReference());
+        }
+        return repository.findByProductIdIn(productIds).stream()
+                .map(this::withLedgerStock)
+                .toList();
+    }
+
+    /**
+     * Forgets applied references older than the retention, by then no delivery of
+     * them can still be retried.
+     */
+    @Scheduled(fixedDelayString = "${application.inventory.adjustments.purge-interval:PT1H}")
+    public void purgeAppliedReferences() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(referenceRetention));
+        int purged;
+        do {
+            purged = jdbcTemplate.update(PURGE_REFERENCES, cutoff, PURGE_BATCH_SIZE);
+        } while (purged == PURGE_BATCH_SIZE);
     }
 
     public Optional<InventoryItem> getStock(String productId) {
-        return repository.findByProductId(productId);
+        return stockCache.get(productId, repository::findByProductId).map(this::withLedgerStock);
+    }
+
+    /**
+     * Stock of several products at once, in the order asked for; unknown products
+     * are left out. Products not cached are read with one query.
+     */
+    public List<InventoryItem> getStocks(List<String> productIds) {
+        Set<String> distinct = new LinkedHashSet<>(productIds);
+        if (distinct.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " products per lookup");
+        }
+        if (distinct.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Optional<InventoryItem>> found = stockCache.getAll(distinct, repository::findByProductIdIn);
+        return distinct.stream()
+                .map(found::get)
+                .flatMap(Optional::stream)
+                .map(this::withLedgerStock)
+                .toList();
+    }
+
+    /**
+     * Replays the stock journal and compares each product's journaled stock with its
+     * current stock. With {@code apply}, mismatched products get the journal's stock;
+     * hot products are only compared. Pause adjustments while applying, or movements
+     * made during the replay show up as mismatches and are overwritten.
+     */
+    public JournalReplayReport replayJournal(boolean apply) throws IOException {
+        long started = System.nanoTime();
+        StockJournal.Replay replay = journal.replay();
+        long millis = (System.nanoTime() - started) / 1_000_000;
+
+        Map<String, Long> current = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, COALESCE(stock_count, 0) FROM inventory_items",
+                (RowCallbackHandler) rs -> current.put(rs.getString(1), rs.getLong(2)));
+        Set<String> productIds = new TreeSet<>(current.keySet());
+        productIds.addAll(replay.stock().keySet());
+        List<JournalReplayReport.Mismatch> mismatches = new ArrayList<>();
+        for (String productId : productIds) {
+            Integer ledgerStock = hotStock.available(productId);
+            long stock = ledgerStock != null ? ledgerStock : current.getOrDefault(productId, 0L);
+            long journaled = replay.stock().getOrDefault(productId, 0L);
+            if (journaled != stock) {
+                mismatches.add(new JournalReplayReport.Mismatch(productId, journaled, stock));
+            }
+        }
+
+        List<String> corrected = mismatches.stream()
+                .map(JournalReplayReport.Mismatch::getProductId)
+                .filter(productId -> apply && !hotStock.isHot(productId) && current.containsKey(productId))
+                .toList();
+        if (!corrected.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate("UPDATE inventory_items SET stock_count = ? WHERE product_id = ?",
+                        corrected.stream()
+                                .map(productId -> new Object[] { replay.stock().getOrDefault(productId, 0L),
+                                        productId })
+                                .toList());
+                changeFeed.record(corrected);
+                stockCache.invalidate(corrected);
+            });
+            System.out.println("[inventory-service] Set stock of " + corrected.size()
+                    + " products from the stock journal");
+        }
+        return JournalReplayReport.builder()
+                .entries(replay.entries())
+                .products(replay.stock().size())
+                .millis(millis)
+                .entriesPerSecond(millis == 0 ? replay.entries() * 1000 : replay.entries() * 1000 / millis)
+                .mismatches(mismatches)
+                .applied(!corrected.isEmpty())
+                .build();
+    }
+
+    // Referenced adjustments already applied to their product are dropped; the rest are recorded
+    // as applied in this transaction, so they count as applied exactly when the stock moves
+    private List<StockAdjustment> firstApplications(List<StockAdjustment> adjustments) {
+        SortedSet<AppliedAdjustment.Key> keys = new TreeSet<>(Comparator.comparing(AppliedAdjustment.Key::getReference)
+                .thenComparing(AppliedAdjustment.Key::getProductId));
+        for (StockAdjustment adjustment : adjustments) {
+            if (adjustment.getReference() != null) {
+                keys.add(new AppliedAdjustment.Key(adjustment.getReference(), adjustment.getProductId()));
+            }
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Set<AppliedAdjustment.Key> applied = new HashSet<>();
+        // One statement per key, in key order: batched inserts don't report which rows were ignored
+        for (AppliedAdjustment.Key key : keys) {
+            if (!claimReference(key.getReference(), key.getProductId(), now)) {
+                applied.add(key);
+            }
+        }
+        if (applied.isEmpty()) {
+            return adjustments;
+        }
+        System.out.println("[inventory-service] Skipped " + applied.size() + " adjustments applied before: " + applied);
+        return adjustments.stream()
+                .filter(adjustment -> adjustment.getReference() == null || !applied.contains(
+                        new AppliedAdjustment.Key(adjustment.getReference(), adjustment.getProductId())))
+                .toList();
+    }
+
+    // Blocks while another transaction holds the same reference, then reports whether it was ours to apply
+    private boolean claimReference(String reference, String productId, Timestamp now) {
+        return jdbcTemplate.update(CLAIM_REFERENCE, reference, productId, now) == 1;
+    }
+
+    // The ledger isn't part of the transaction; take the deltas back out if it doesn't commit
+    private void revertOnRollback(SortedMap<String, Integer> deltas) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    hotStock.revert(deltas);
+                }
+            }
+        });
+    }
+
+    // Hot products' rows lag behind the ledger until its next flush; copy, so the managed entity is untouched
+    private InventoryItem withLedgerStock(InventoryItem item) {
+        Integer available = hotStock.available(item.getProductId());
+        if (available == null) {
+            return item;
+        }
+        return item.toBuilder().stockCount(available).build();
+    }
+
+    private void applyDeltas(SortedMap<String, Integer> deltas) {
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((productId, delta) -> rows.add(new Object[] { delta, productId, delta }));
+        int[] matched = jdbcTemplate.batchUpdate(ADJUST_STOCK, rows);
+
+        Map<String, Integer> refused = new TreeMap<>();
+        int row = 0;
+        for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+            if (matched[row++] != 0) {
+                continue;
+            }
+            if (delta.getValue() >= 0) {
+                jdbcTemplate.update(INSERT_STOCK, delta.getKey(), delta.getValue());
+            } else {
+                refused.put(delta.getKey(), -delta.getValue());
+            }
+        }
+        if (!refused.isEmpty()) {
+            Map<String, Integer> available = repository.findByProductIdIn(refused.keySet()).stream()
+                    .collect(Collectors.toMap(InventoryItem::getProductId, InventoryItem::getAvailableCount));
+            throw new InsufficientStockException(refused.entrySet().stream()
+                    .map(shortage -> new StockShortage(shortage.getKey(), shortage.getValue(),
+                            available.getOrDefault(shortage.getKey(), 0)))
+                    .toList());
+        }
     }
 }
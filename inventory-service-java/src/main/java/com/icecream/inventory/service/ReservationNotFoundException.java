@@ -0,0 +1,11 @@
+package com.icecream.inventory.service;
+
+/**
+ * The reservation doesn't exist or was already committed, released or expired.
+ */
+public class ReservationNotFoundException extends RuntimeException {
+
+    public ReservationNotFoundException(String reservationId) {
+        super("No active reservation " + reservationId);
+    }
+}
@@ -0,0 +1,106 @@
+package com.icecream.inventory.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.icecream.inventory.model.InventoryItem;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of inventory rows for stock displays, keyed by
+ * product id. Unknown products are cached as empty too, so carts listing retired
+ * products don't query for them every time.
+ * <p>
+ * Writers in this instance invalidate after their transaction completes; writes
+ * from other instances are seen once the entry expires. Adjustments and
+ * reservations always check stock in the database, never here. Hit, miss and
+ * eviction statistics are published as {@code cache.*} meters, and the number of
+ * products per batch lookup as {@code inventory.stock.lookup.batch.size}.
+ */
+@Component
+public class StockCache {
+
+    private final boolean enabled;
+    private final Cache<String, Optional<InventoryItem>> cache;
+    private final DistributionSummary batchSizes;
+
+    public StockCache(
+            MeterRegistry meterRegistry,
+            @Value("${application.inventory.stock-cache.enabled:true}") boolean enabled,
+            @Value("${application.inventory.stock-cache.max-size:10000}") long maxSize,
+            @Value("${application.inventory.stock-cache.ttl:PT1M}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "inventoryStock");
+        this.batchSizes = DistributionSummary.builder("inventory.stock.lookup.batch.size")
+                .description("Products requested per batch stock lookup")
+                .serviceLevelObjectives(1, 5, 10, 25, 50, 100, 200)
+                .register(meterRegistry);
+    }
+
+    public Optional<InventoryItem> get(String productId, Function<String, Optional<InventoryItem>> loader) {
+        if (!enabled) {
+            return loader.apply(productId);
+        }
+        return cache.get(productId, key -> loader.apply(key).map(StockCache::detached));
+    }
+
+    /**
+     * Looks up all products, loading the ones not cached with a single call to
+     * {@code loader}. Products the loader doesn't return are unknown.
+     */
+    public Map<String, Optional<InventoryItem>> getAll(Set<String> productIds,
+                                                       Function<Set<String>, List<InventoryItem>> loader) {
+        batchSizes.record(productIds.size());
+        if (!enabled) {
+            return found(productIds, loader.apply(productIds));
+        }
+        return cache.getAll(productIds, missing -> found(missing, loader.apply(Set.copyOf(missing))));
+    }
+
+    /** Drops the entries once the current transaction completes, or right away outside one. */
+    public void invalidate(Collection<String> productIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidateAll(productIds);
+            return;
+        }
+        Set<String> keys = Set.copyOf(productIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                cache.invalidateAll(keys);
+            }
+        });
+    }
+
+    private static Map<String, Optional<InventoryItem>> found(Set<? extends String> productIds,
+                                                              List<InventoryItem> items) {
+        Map<String, Optional<InventoryItem>> found = new HashMap<>();
+        productIds.forEach(productId -> found.put(productId, Optional.empty()));
+        items.forEach(item -> found.put(item.getProductId(), Optional.of(detached(item))));
+        return found;
+    }
+
+    // Cached rows are shared across requests; never hand out an entity a persistence context still manages
+    private static InventoryItem detached(InventoryItem item) {
+        return item.toBuilder().build();
+    }
+}
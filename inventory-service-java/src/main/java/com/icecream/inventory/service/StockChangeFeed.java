@@ -0,0 +1,431 @@
+package com.icecream.inventory.service;
+
+import com.icecream.inventory.dto.StockChangeBatch;
+import com.icecream.inventory.model.StockChange;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Versioned feed of stock changes, so other services can keep availability
+ * caches fresh from one connection instead of polling every product.
+ * <p>
+ * Writers call {@link #record(Collection)} inside their transaction after
+ * changing products; it copies the rows' new stock into {@code stock_changes},
+ * whose auto-increment id is the version. Readers only get versions up to the
+ * {@link VersionWatermark}, so a transaction that commits after a later version
+ * can't be skipped. Hot products (see {@link HotStockLedger}) appear once per
+ * ledger flush with their flushed stock.
+ * <p>
+ * Consumers page with {@link #read(long, int)}, long-poll with
+ * {@link #poll(long, int, Duration)}, or keep an SSE stream open with
+ * {@link #subscribe(long)}. Waiting polls and streams are served by one dispatcher
+ * thread, woken whenever the watermark moves, which reads each page once for all
+ * of them. The dispatcher never writes to a client: each stream has its own
+ * bounded queue of events, sent on a virtual thread of its own, so a client that
+ * stops reading only holds up itself. A stream whose queue fills up is closed,
+ * and the client resumes from its {@code Last-Event-ID}.
+ * <p>
+ * Changes written by other instances are let in once they are older than the
+ * settle time. A transaction on another instance that commits more than the
+ * settle time after recording its change is missed by readers that already moved
+ * past its version, so inventory transactions must stay well within the settle
+ * time; a single writing instance has no such limit.
+ * <p>
+ * Compaction keeps only the latest change of each product once changes are older
+ * than the retention window, so reading from version 0 yields the current stock of
+ * every product that ever changed.
+ */
+@Component
+@DependsOn("entityManagerFactory")  // Hibernate creates stock_changes first
+public class StockChangeFeed {
+
+    private static final String CHANGE_EVENT = "stock-change";
+    private static final String INSERT_CHANGE =
+            "INSERT INTO stock_changes (product_id, stock_count, reserved_count, changed_at) "
+                    + "SELECT product_id, stock_count, reserved_count, ? FROM inventory_items WHERE product_id = ?";
+    private static final String SELECT_CHANGES =
+            "SELECT version, product_id, stock_count, reserved_count, changed_at FROM stock_changes "
+                    + "WHERE version > ? AND version <= ? ORDER BY version LIMIT ?";
+    // Changes with a newer change of the same product, past retention
+    private static final String SUPERSEDED =
+            "SELECT c.version FROM stock_changes c WHERE c.changed_at < ? AND EXISTS "
+                    + "(SELECT 1 FROM stock_changes n WHERE n.product_id = c.product_id AND n.version > c.version) "
+                    + "ORDER BY c.version LIMIT ?";
+    private static final RowMapper<StockChange> CHANGE_MAPPER = (rs, rowNum) -> StockChange.builder()
+            .version(rs.getLong(1))
+            .productId(rs.getString(2))
+            .stockCount(rs.getObject(3, Integer.class))
+            .reservedCount(rs.getObject(4, Integer.class))
+            .changedAt(rs.getTimestamp(5).toLocalDateTime())
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VersionWatermark watermark;
+    private final int maxPageSize;
+    private final Duration maxWait;
+    private final Duration settleTime;
+    private final Duration retention;
+    private final int compactionBatchSize;
+    private final int maxSubscribers;
+    private final long streamTimeoutMillis;
+    private final int maxQueuedEvents;
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+    private final Set<Stream> streams = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger streamCount = new AtomicInteger();
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+    private final ThreadPoolExecutor dispatcher;
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("stock-change-send-", 0).factory());
+
+    public StockChangeFeed(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${application.inventory.changes.max-page-size:500}") int maxPageSize,
+            @Value("${application.inventory.changes.max-wait:PT30S}") Duration maxWait,
+            @Value("${application.inventory.changes.settle-time:PT5S}") Duration settleTime,
+            @Value("${application.inventory.changes.retention:PT24H}") Duration retention,
+            @Value("${application.inventory.changes.compaction-batch-size:1000}") int compactionBatchSize,
+            @Value("${application.inventory.changes.max-subscribers:1000}") int maxSubscribers,
+            @Value("${application.inventory.changes.stream-timeout:PT30M}") Duration streamTimeout,
+            @Value("${application.inventory.changes.max-queued-events:1000}") int maxQueuedEvents) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxPageSize = maxPageSize;
+        this.maxWait = maxWait;
+        this.settleTime = settleTime;
+        this.retention = retention;
+        this.compactionBatchSize = compactionBatchSize;
+        this.maxSubscribers = maxSubscribers;
+        this.streamTimeoutMillis = streamTimeout.toMillis();
+        this.maxQueuedEvents = maxQueuedEvents;
+        Long committed = jdbcTemplate.queryForObject("SELECT MAX(version) FROM stock_changes", Long.class);
+        this.watermark = new VersionWatermark(committed == null ? 0 : committed);
+        // One thread is enough: dispatches are coalesced, and each reads a page once for every waiter
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stock-change-dispatch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("inventory.changes.version", watermark, VersionWatermark::get)
+                .description("Highest stock change version served by the feed")
+                .register(meterRegistry);
+        Gauge.builder("inventory.changes.subscribers", streamCount, AtomicInteger::get)
+                .description("Open stock change streams")
+                .register(meterRegistry);
+        Gauge.builder("inventory.changes.waiting", waiters, Set::size)
+                .description("Long polls waiting for a stock change")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the current stock of the products as one change each. Must run inside
+     * the transaction that changed them, after the change.
+     */
+    public void record(Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        VersionWatermark.Pending pending = watermark.begin();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (watermark.end(pending)) {
+                    signal();
+                }
+            }
+        });
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<String> sorted = new ArrayList<>(new TreeSet<>(productIds));
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        PreparedStatementCreator insert = connection ->
+                connection.prepareStatement(INSERT_CHANGE, Statement.RETURN_GENERATED_KEYS);
+        jdbcTemplate.batchUpdate(insert, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setTimestamp(1, now);
+                ps.setString(2, sorted.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return sorted.size();
+            }
+        }, keys);
+        long[] versions = keys.getKeyList().stream()
+                .mapToLong(key -> ((Number) key.values().iterator().next()).longValue())
+                .sorted()
+                .toArray();
+        if (versions.length > 0) {
+            watermark.assigned(pending, versions);
+        }
+    }
+
+    /** Up to {@code limit} changes after {@code since}, without waiting. */
+    public StockChangeBatch read(long since, int limit) {
+        int pageSize = pageSize(limit);
+        long upTo = watermark.get();
+        if (since >= upTo) {
+            return new StockChangeBatch(List.of(), since);
+        }
+        return batch(since, query(since, upTo, pageSize));
+    }
+
+    /**
+     * Like {@link #read(long, int)}, but when there is nothing after {@code since}
+     * waits up to {@code wait} (at most the configured maximum) for a change.
+     */
+    public DeferredResult<StockChangeBatch> poll(long since, int limit, Duration wait) {
+        Duration timeout = wait.compareTo(maxWait) > 0 ? maxWait : wait;
+        DeferredResult<StockChangeBatch> result =
+                new DeferredResult<>(timeout.toMillis(), new StockChangeBatch(List.of(), since));
+        StockChangeBatch available = read(since, limit);
+        if (!available.getChanges().isEmpty() || timeout.isZero() || timeout.isNegative()) {
+            result.setResult(available);
+            return result;
+        }
+        Waiter waiter = new Waiter(since, pageSize(limit), result);
+        result.onCompletion(() -> waiters.remove(waiter));
+        waiters.add(waiter);
+        // A change may have landed between the read and registering
+        signal();
+        return result;
+    }
+
+    /**
+     * Opens a stream sending every change after {@code since} as a
+     * {@code stock-change} event whose id is its version, first the backlog and then
+     * live. Returns null when the subscriber limit is reached.
+     */
+    public SseEmitter subscribe(long since) {
+        if (streamCount.incrementAndGet() > maxSubscribers) {
+            streamCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        Stream stream = new Stream(emitter, since);
+        Runnable unsubscribe = () -> {
+            if (streams.remove(stream)) {
+                streamCount.decrementAndGet();
+            }
+        };
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        streams.add(stream);
+        signal();
+        return emitter;
+    }
+
+    /** Lets in settled changes written by other instances. */
+    @Scheduled(fixedDelayString = "${application.inventory.changes.settle-poll-interval:PT1S}")
+    public void observeSettled() {
+        Long settled = jdbcTemplate.queryForObject("SELECT MAX(version) FROM stock_changes WHERE changed_at < ?",
+                Long.class, Timestamp.valueOf(LocalDateTime.now().minus(settleTime)));
+        if (settled != null && watermark.observe(settled)) {
+            signal();
+        }
+    }
+
+    /** Keeps idle streams open through proxies and detects clients that went away. */
+    @Scheduled(fixedDelayString = "${application.inventory.changes.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        for (Stream stream : streams) {
+            enqueue(stream, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    /** Deletes changes past retention that a newer change of the same product supersedes. */
+    @Scheduled(fixedDelayString = "${application.inventory.changes.compaction-interval:PT10M}")
+    public void compact() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        int deleted = 0;
+        List<Long> superseded;
+        do {
+            superseded = jdbcTemplate.queryForList(SUPERSEDED, Long.class, cutoff, compactionBatchSize);
+            if (!superseded.isEmpty()) {
+                jdbcTemplate.update("DELETE FROM stock_changes WHERE version IN ("
+                        + String.join(", ", Collections.nCopies(superseded.size(), "?")) + ")", superseded.toArray());
+                deleted += superseded.size();
+            }
+        } while (superseded.size() == compactionBatchSize);
+        if (deleted > 0) {
+            System.out.println("[inventory-service] Compacted " + deleted + " superseded stock changes");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private void signal() {
+        if (dispatchPending.compareAndSet(false, true)) {
+            dispatcher.execute(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        dispatchPending.set(false);
+        long upTo = watermark.get();
+        while (true) {
+            long from = Long.MAX_VALUE;
+            for (Waiter waiter : waiters) {
+                from = Math.min(from, waiter.since);
+            }
+            for (Stream stream : streams) {
+                from = Math.min(from, stream.cursor);
+            }
+            if (from >= upTo) {
+                return;
+            }
+            List<StockChange> page = query(from, upTo, maxPageSize);
+            if (page.isEmpty()) {
+                return;
+            }
+            long pageEnd = page.get(page.size() - 1).getVersion();
+            for (Waiter waiter : waiters) {
+                List<StockChange> changes = after(page, waiter.since, waiter.limit);
+                if (!changes.isEmpty() && waiter.result.setResult(batch(waiter.since, changes))) {
+                    waiters.remove(waiter);
+                }
+            }
+            for (Stream stream : streams) {
+                for (StockChange change : after(page, stream.cursor, maxPageSize)) {
+                    if (!enqueue(stream, SseEmitter.event().id(Long.toString(change.getVersion()))
+                            .name(CHANGE_EVENT).data(change, MediaType.APPLICATION_JSON))) {
+                        break;
+                    }
+                    stream.cursor = change.getVersion();
+                }
+            }
+            if (pageEnd >= upTo) {
+                return;
+            }
+        }
+    }
+
+    /** Queues the event for the stream's sender. Returns false if the stream was closed instead. */
+    private boolean enqueue(Stream stream, SseEmitter.SseEventBuilder event) {
+        if (!streams.contains(stream)) {
+            return false;
+        }
+        if (stream.queued.incrementAndGet() > maxQueuedEvents) {
+            // Not reading; drop it rather than buffer without bound, it resumes from Last-Event-ID
+            close(stream, new IOException("Stock change stream fell " + maxQueuedEvents + " events behind"));
+            return false;
+        }
+        stream.outbox.add(event);
+        if (stream.sending.compareAndSet(false, true)) {
+            senders.execute(() -> send(stream));
+        }
+        return true;
+    }
+
+    // Runs on the stream's sender; only one per stream at a time, so events go out in order
+    private void send(Stream stream) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            while ((event = stream.outbox.poll()) != null) {
+                stream.queued.decrementAndGet();
+                try {
+                    stream.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    close(stream, e);
+                    return;
+                }
+            }
+            stream.sending.set(false);
+            // An event queued after the last poll but before the flag was cleared has no sender yet
+            if (stream.outbox.isEmpty() || !stream.sending.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void close(Stream stream, Throwable cause) {
+        if (streams.remove(stream)) {
+            streamCount.decrementAndGet();
+        }
+        stream.outbox.clear();
+        // The emitter locks around each send, so completing it could wait for a stuck one
+        senders.execute(() -> stream.emitter.completeWithError(cause));
+    }
+
+    private List<StockChange> query(long since, long upTo, int limit) {
+        return jdbcTemplate.query(SELECT_CHANGES, CHANGE_MAPPER, since, upTo, limit);
+    }
+
+    private int pageSize(int limit) {
+        return limit <= 0 ? maxPageSize : Math.min(limit, maxPageSize);
+    }
+
+    private static List<StockChange> after(List<StockChange> page, long since, int limit) {
+        List<StockChange> changes = new ArrayList<>();
+        for (StockChange change : page) {
+            if (change.getVersion() > since && changes.size() < limit) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    private static StockChangeBatch batch(long since, List<StockChange> changes) {
+        return new StockChangeBatch(changes, changes.isEmpty() ? since : changes.get(changes.size() - 1).getVersion());
+    }
+
+    private record Waiter(long since, int limit, DeferredResult<StockChangeBatch> result) {
+    }
+
+    private static final class Stream {
+        private final SseEmitter emitter;
+        private final ConcurrentLinkedQueue<SseEmitter.SseEventBuilder> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        // Last version queued for sending; only the dispatcher writes it
+        private volatile long cursor;
+
+        Stream(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+}
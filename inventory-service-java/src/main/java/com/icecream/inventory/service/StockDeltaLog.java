@@ -0,0 +1,237 @@
+package com.icecream.inventory.service;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of the stock deltas applied by {@link HotStockLedger}, so deltas
+ * not yet flushed to MySQL survive a crash. Each record is a line
+ * {@code seq<TAB>productId<TAB>delta}.
+ * <p>
+ * Appends only copy the record into a buffer; {@link #sync(long)} makes them
+ * durable with group commit: whichever caller gets the sync lock writes out
+ * everything buffered so far and forces it once, and callers whose records were
+ * in that write return without touching the disk.
+ * <p>
+ * The log is split into files at every {@link #checkpoint()}; once the deltas up
+ * to a checkpoint are in MySQL the files before it can be deleted.
+ */
+class StockDeltaLog implements Closeable {
+
+    private static final String PREFIX = "ledger-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    // Lock order: syncLock, then appendLock
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final List<Path> closedFiles = new ArrayList<>();
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+    private Map<String, Long> unflushed = new HashMap<>();
+    private FileChannel channel;
+    private Path file;
+    private long lastSeq;
+    private volatile long durableSeq;
+
+    private StockDeltaLog(Path directory, boolean fsync, long lastSeq) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.lastSeq = lastSeq;
+        this.durableSeq = lastSeq;
+        openFile();
+    }
+
+    /**
+     * Starts a new log after {@code lastSeq}. Any existing log files must have been
+     * replayed and deleted first.
+     */
+    static StockDeltaLog open(Path directory, boolean fsync, long lastSeq) throws IOException {
+        Files.createDirectories(directory);
+        return new StockDeltaLog(directory, fsync, lastSeq);
+    }
+
+    /**
+     * Records a delta and returns its sequence number. Not durable until
+     * {@link #sync(long)} returns for that number.
+     */
+    long append(String productId, long delta) {
+        appendLock.lock();
+        try {
+            long seq = ++lastSeq;
+            buffer.writeBytes((seq + "\t" + productId + "\t" + delta + "\n").getBytes(StandardCharsets.UTF_8));
+            unflushed.merge(productId, delta, Long::sum);
+            return seq;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /** Blocks until every record up to {@code seq} is on disk. */
+    void sync(long seq) throws IOException {
+        if (durableSeq >= seq) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durableSeq >= seq) {
+                return;  // written by the caller that held the lock before us
+            }
+            writeBuffered();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Takes the deltas appended since the previous checkpoint and starts a new file.
+     * Returns null if nothing was appended. After the deltas are in MySQL, call
+     * {@link #delete(List)} with the closed files; if that fails, {@link #restore(Map)}
+     * hands the deltas back for the next checkpoint.
+     */
+    Checkpoint checkpoint() throws IOException {
+        syncLock.lock();
+        appendLock.lock();
+        try {
+            if (unflushed.isEmpty()) {
+                return null;
+            }
+            writeBuffered();
+            channel.close();
+            closedFiles.add(file);
+            openFile();
+            Checkpoint checkpoint = new Checkpoint(lastSeq, unflushed, List.copyOf(closedFiles));
+            unflushed = new HashMap<>();
+            return checkpoint;
+        } finally {
+            appendLock.unlock();
+            syncLock.unlock();
+        }
+    }
+
+    void restore(Map<String, Long> deltas) {
+        appendLock.lock();
+        try {
+            deltas.forEach((productId, delta) -> unflushed.merge(productId, delta, Long::sum));
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    void delete(List<Path> files) throws IOException {
+        syncLock.lock();
+        try {
+            for (Path closed : files) {
+                Files.deleteIfExists(closed);
+                closedFiles.remove(closed);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncLock.lock();
+        try {
+            writeBuffered();
+            channel.close();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // Caller holds syncLock
+    private void writeBuffered() throws IOException {
+        byte[] pending;
+        long upTo;
+        appendLock.lock();
+        try {
+            pending = buffer.toByteArray();
+            upTo = lastSeq;
+            buffer = new ByteArrayOutputStream(Math.max(8192, pending.length));
+        } finally {
+            appendLock.unlock();
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(pending);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        durableSeq = upTo;
+    }
+
+    private void openFile() throws IOException {
+        file = directory.resolve(PREFIX + String.format("%019d", lastSeq + 1) + SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Reads every log file in the directory and sums the deltas with a sequence
+     * number above {@code afterSeq}, per product. A torn last record (a crash in the
+     * middle of a write) ends its file.
+     */
+    static Replay replay(Path directory, long afterSeq) throws IOException {
+        Map<String, Long> deltas = new HashMap<>();
+        long lastSeq = afterSeq;
+        for (Path log : files(directory)) {
+            try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    if (fields.length != 3) {
+                        break;
+                    }
+                    long seq;
+                    long delta;
+                    try {
+                        seq = Long.parseLong(fields[0]);
+                        delta = Long.parseLong(fields[2]);
+                    } catch (NumberFormatException e) {
+                        break;
+                    }
+                    if (seq > afterSeq) {
+                        deltas.merge(fields[1], delta, Long::sum);
+                        lastSeq = Math.max(lastSeq, seq);
+                    }
+                }
+            }
+        }
+        return new Replay(deltas, lastSeq);
+    }
+
+    static List<Path> files(Path directory) throws IOException {
+        List<Path> logs = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return logs;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(logs::add);
+        }
+        logs.sort(null);  // zero-padded first sequence number in the name
+        return logs;
+    }
+
+    record Checkpoint(long seq, Map<String, Long> deltas, List<Path> closedFiles) {
+    }
+
+    record Replay(Map<String, Long> deltas, long lastSeq) {
+    }
+}
@@ -0,0 +1,383 @@
+package com.icecream.inventory.service;
+
+import com.icecream.inventory.model.StockMovementReason;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of every movement of on-hand stock, as an audit trail and so
+ * current stock can be rebuilt by replaying it.
+ * <p>
+ * Movements are fixed 64-byte records in memory-mapped segment files, named after
+ * their first sequence number; a new segment is started when one is full. An
+ * append copies the record into the mapping and returns, and the page cache writes
+ * it out; mappings are forced to disk on a schedule, never on the adjustment
+ * path. Movements are appended once their transaction commits.
+ * <p>
+ * Record layout (big-endian): sequence (8), epoch millis (8), product key (4),
+ * delta (4), reason ordinal (1), reference length (1), reference (34, UTF-8,
+ * truncated), CRC-32C of the preceding 60 bytes (4). Unwritten slots are zero.
+ * Product ids are mapped to dense keys in {@code products.dict}, a line
+ * {@code key<TAB>productId} each, written before the first record using the key.
+ * <p>
+ * A new journal starts with an {@link StockMovementReason#OPENING_BALANCE} per
+ * product. Only this instance's movements are journaled.
+ */
+@Component
+@DependsOn("entityManagerFactory")  // opening balances read inventory_items, after the ledger (injected) replayed
+public class StockJournal {
+
+    static final int RECORD_SIZE = 64;
+    private static final int CHECKSUMMED_BYTES = 60;
+    private static final int REFERENCE_OFFSET = 26;
+    private static final int MAX_REFERENCE_BYTES = CHECKSUMMED_BYTES - REFERENCE_OFFSET;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DICTIONARY = "products.dict";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HotStockLedger hotStock;
+    private final boolean enabled;
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final Timer appendTimer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Integer> productKeys = new HashMap<>();
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private final CRC32C crc = new CRC32C();
+    private FileChannel dictionary;
+    private MappedByteBuffer segment;
+    private MappedByteBuffer retired;  // full segment not forced since rollover
+    private int segmentCapacity;
+    private int slot;
+    private long nextSeq;
+
+    public StockJournal(
+            JdbcTemplate jdbcTemplate,
+            HotStockLedger hotStock,
+            MeterRegistry meterRegistry,
+            @Value("${application.inventory.journal.enabled:true}") boolean enabled,
+            @Value("${application.inventory.journal.directory:data/stock-journal}") Path directory,
+            @Value("${application.inventory.journal.segment-records:1048576}") int recordsPerSegment,
+            @Value("${application.inventory.journal.append-percentiles:false}") boolean appendPercentiles) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hotStock = hotStock;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        Timer.Builder appendTimer = Timer.builder("inventory.journal.append")
+                .description("Time to append one movement, waiting for the journal lock included");
+        if (appendPercentiles) {
+            // Costs more per append than the plain timer, so only for benchmark runs
+            appendTimer.publishPercentiles(0.5, 0.99);
+        }
+        this.appendTimer = appendTimer.register(meterRegistry);
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<String> products = readDictionary(directory);
+        for (int key = 0; key < products.size(); key++) {
+            productKeys.put(products.get(key), key);
+        }
+        dictionary = FileChannel.open(directory.resolve(DICTIONARY), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            mapSegment(1);
+            writeOpeningBalances();
+            return;
+        }
+        // Continue after the last intact record of the last segment
+        Path last = segments.get(segments.size() - 1);
+        long firstSeq = firstSeq(last);
+        int capacity = (int) (Files.size(last) / RECORD_SIZE);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        }
+        segmentCapacity = capacity;
+        slot = intactRecords(segment, capacity);
+        nextSeq = firstSeq + slot;
+        System.out.println("[inventory-service] Stock journal resumes at movement " + nextSeq + " in "
+                + last.getFileName());
+    }
+
+    /**
+     * Journals a movement of on-hand stock once the current transaction commits, or
+     * right away outside one. Never fails the caller.
+     */
+    public void record(String productId, int delta, StockMovementReason reason, String reference) {
+        if (!enabled || delta == 0) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(productId, delta, reason, reference, timestamp);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                append(productId, delta, reason, reference, timestamp);
+            }
+        });
+    }
+
+    /** Writes appended movements out to disk; a crash of the process alone loses nothing either way. */
+    @Scheduled(fixedDelayString = "${application.inventory.journal.force-interval:PT1S}")
+    public void force() {
+        MappedByteBuffer current;
+        MappedByteBuffer full;
+        lock.lock();
+        try {
+            current = segment;
+            full = retired;
+            retired = null;
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            full.force();
+        }
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    /** Sums every intact movement per product, reading the segments sequentially. */
+    public Replay replay() throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("The stock journal is disabled");
+        }
+        force();
+        return replay(directory);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        lock.lock();
+        try {
+            if (retired != null) {
+                retired.force();
+                retired = null;
+            }
+            if (segment != null) {
+                segment.force();
+                segment = null;
+            }
+            if (dictionary != null) {
+                dictionary.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(String productId, int delta, StockMovementReason reason, String reference, long timestamp) {
+        long started = System.nanoTime();
+        lock.lock();
+        try {
+            if (segment == null) {
+                return;  // shutting down
+            }
+            if (slot == segmentCapacity) {
+                if (retired != null) {
+                    retired.force();  // rolled over twice within a force interval
+                }
+                retired = segment;
+                mapSegment(nextSeq);
+            }
+            int key = keyFor(productId);
+            byte[] referenceBytes = reference == null ? new byte[0] : reference.getBytes(StandardCharsets.UTF_8);
+            int referenceLength = Math.min(referenceBytes.length, MAX_REFERENCE_BYTES);
+
+            recordBuffer.clear();
+            recordBuffer.putLong(nextSeq).putLong(timestamp).putInt(key).putInt(delta)
+                    .put((byte) reason.ordinal()).put((byte) referenceLength).put(referenceBytes, 0, referenceLength);
+            Arrays.fill(record, REFERENCE_OFFSET + referenceLength, CHECKSUMMED_BYTES, (byte) 0);
+            crc.reset();
+            crc.update(record, 0, CHECKSUMMED_BYTES);
+            recordBuffer.putInt(CHECKSUMMED_BYTES, (int) crc.getValue());
+
+            segment.put(slot * RECORD_SIZE, record);
+            slot++;
+            nextSeq++;
+        } catch (IOException e) {
+            System.err.println("Failed to journal stock movement of " + delta + " for " + productId + ": "
+                    + e.getMessage());
+        } finally {
+            lock.unlock();
+            appendTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Caller holds the lock, or is still in open()
+    private int keyFor(String productId) throws IOException {
+        Integer key = productKeys.get(productId);
+        if (key != null) {
+            return key;
+        }
+        int next = productKeys.size();
+        ByteBuffer line = ByteBuffer.wrap((next + "\t" + productId + "\n").getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            dictionary.write(line);
+        }
+        productKeys.put(productId, next);
+        return next;
+    }
+
+    // Caller holds the lock, or is still in open()
+    private void mapSegment(long firstSeq) throws IOException {
+        Path file = directory.resolve(SEGMENT_PREFIX + String.format("%019d", firstSeq) + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // Mapping past the end grows the file; the new space reads as zeros, i.e. unwritten slots
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        }
+        segmentCapacity = recordsPerSegment;
+        slot = 0;
+        nextSeq = firstSeq;
+    }
+
+    private void writeOpeningBalances() {
+        List<Object[]> balances = new ArrayList<>();
+        jdbcTemplate.query("SELECT product_id, COALESCE(stock_count, 0) FROM inventory_items ORDER BY product_id",
+                (RowCallbackHandler) rs -> balances.add(new Object[] { rs.getString(1), rs.getInt(2) }));
+        long timestamp = System.currentTimeMillis();
+        for (Object[] balance : balances) {
+            String productId = (String) balance[0];
+            Integer ledgerStock = hotStock.available(productId);
+            int stock = ledgerStock != null ? ledgerStock : (Integer) balance[1];
+            if (stock != 0) {
+                append(productId, stock, StockMovementReason.OPENING_BALANCE, null, timestamp);
+            }
+        }
+        System.out.println("[inventory-service] Started stock journal with opening balances for "
+                + balances.size() + " products");
+    }
+
+    static Replay replay(Path directory) throws IOException {
+        List<String> products = readDictionary(directory);
+        long[] stock = new long[products.size()];
+        long entries = 0;
+        CRC32C checksum = new CRC32C();
+        for (Path file : segments(directory)) {
+            MappedByteBuffer mapped;
+            long size = Files.size(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer view = mapped.duplicate();
+            int records = (int) (size / RECORD_SIZE);
+            for (int index = 0; index < records; index++) {
+                int offset = index * RECORD_SIZE;
+                if (!intact(mapped, view, offset, checksum)) {
+                    break;  // end of the written part, or torn by a crash
+                }
+                int key = mapped.getInt(offset + 16);
+                if (key < stock.length) {
+                    stock[key] += mapped.getInt(offset + 20);
+                }
+                entries++;
+            }
+        }
+        Map<String, Long> byProduct = new HashMap<>();
+        for (int key = 0; key < stock.length; key++) {
+            byProduct.put(products.get(key), stock[key]);
+        }
+        return new Replay(byProduct, entries);
+    }
+
+    private static int intactRecords(MappedByteBuffer mapped, int capacity) {
+        ByteBuffer view = mapped.duplicate();
+        CRC32C checksum = new CRC32C();
+        int records = 0;
+        while (records < capacity && intact(mapped, view, records * RECORD_SIZE, checksum)) {
+            records++;
+        }
+        return records;
+    }
+
+    private static boolean intact(ByteBuffer mapped, ByteBuffer view, int offset, CRC32C checksum) {
+        if (mapped.getLong(offset) == 0) {
+            return false;
+        }
+        view.limit(offset + CHECKSUMMED_BYTES).position(offset);
+        checksum.reset();
+        checksum.update(view);
+        return (int) checksum.getValue() == mapped.getInt(offset + CHECKSUMMED_BYTES);
+    }
+
+    private static List<String> readDictionary(Path directory) throws IOException {
+        List<String> products = new ArrayList<>();
+        Path file = directory.resolve(DICTIONARY);
+        if (!Files.exists(file)) {
+            return products;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0 || Integer.parseInt(line.substring(0, tab)) != products.size()) {
+                    break;  // torn last line
+                }
+                products.add(line.substring(tab + 1));
+            }
+        }
+        return products;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        segments.sort(null);  // zero-padded first sequence number in the name
+        return segments;
+    }
+
+    private static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    public record Replay(Map<String, Long> stock, long entries) {
+    }
+}
@@ -0,0 +1,347 @@
+package com.icecream.inventory.service;
+
+import com.icecream.inventory.dto.StockAdjustment;
+import com.icecream.inventory.dto.StockShortage;
+import com.icecream.inventory.model.InventoryItem;
+import com.icecream.inventory.model.ReservedItem;
+import com.icecream.inventory.model.StockMovementReason;
+import com.icecream.inventory.model.StockReservation;
+import com.icecream.inventory.repository.InventoryRepository;
+import com.icecream.inventory.repository.StockReservationRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Holds stock for a checkout without taking it off the shelf: a reservation adds
+ * its units to {@code reserved_count}, which direct adjustments and other
+ * reservations can't dip into, and is then either committed (the units leave
+ * {@code stock_count} as well) or released. Available stock is read off the row
+ * as on-hand minus reserved, never by summing reservations.
+ * <p>
+ * Reservations that are neither committed nor released expire after their TTL.
+ * Their ids sit in a {@link TimingWheel} spanning the maximum TTL, so each tick
+ * only touches the reservations due in it rather than scanning the table or
+ * keeping a timer per reservation. Each instance wheels
+ * the reservations it made plus, on startup, every active one; a slow sweep of
+ * overdue rows covers reservations of an instance that went away.
+ * <p>
+ * Hot products (see {@link HotStockLedger}) keep no reserved count: reserving
+ * takes the units out of the ledger, and releasing puts them back.
+ */
+@Service
+public class StockReservationService {
+    // The condition refuses the reservation if it would dip into stock already held
+    private static final String RESERVE =
+            "UPDATE inventory_items SET reserved_count = COALESCE(reserved_count, 0) + ? "
+                    + "WHERE product_id = ? AND COALESCE(stock_count, 0) - COALESCE(reserved_count, 0) >= ?";
+    private static final String UNRESERVE =
+            "UPDATE inventory_items SET reserved_count = GREATEST(COALESCE(reserved_count, 0) - ?, 0) "
+                    + "WHERE product_id = ?";
+    private static final String COMMIT =
+            "UPDATE inventory_items SET stock_count = COALESCE(stock_count, 0) - ?, "
+                    + "reserved_count = GREATEST(COALESCE(reserved_count, 0) - ?, 0) WHERE product_id = ?";
+    private static final String OVERDUE =
+            "SELECT id FROM stock_reservations WHERE expires_at <= ? ORDER BY expires_at LIMIT ?";
+
+    private final StockReservationRepository reservationRepository;
+    private final InventoryRepository inventoryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final HotStockLedger hotStock;
+    private final StockCache stockCache;
+    private final StockChangeFeed changeFeed;
+    private final StockJournal journal;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final int sweepBatchSize;
+    private final TimingWheel<String> wheel;
+
+    public StockReservationService(
+            StockReservationRepository reservationRepository,
+            InventoryRepository inventoryRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            HotStockLedger hotStock,
+            StockCache stockCache,
+            StockChangeFeed changeFeed,
+            StockJournal journal,
+            @Value("${application.inventory.reservations.default-ttl:PT15M}") Duration defaultTtl,
+            @Value("${application.inventory.reservations.max-ttl:PT2H}") Duration maxTtl,
+            @Value("${application.inventory.reservations.tick:PT1S}") Duration tick,
+            @Value("${application.inventory.reservations.sweep-batch-size:500}") int sweepBatchSize) {
+        this.reservationRepository = reservationRepository;
+        this.inventoryRepository = inventoryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.hotStock = hotStock;
+        this.stockCache = stockCache;
+        this.changeFeed = changeFeed;
+        this.journal = journal;
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.sweepBatchSize = sweepBatchSize;
+        // One rotation covers the longest hold, so no reservation is walked past before it is due
+        int wheelSize = (int) Math.ceilDiv(maxTtl.toMillis(), tick.toMillis()) + 1;
+        this.wheel = new TimingWheel<>(tick.toMillis(), wheelSize, System.currentTimeMillis());
+    }
+
+    @PostConstruct
+    void loadActive() {
+        jdbcTemplate.query("SELECT id, expires_at FROM stock_reservations", (RowCallbackHandler) rs ->
+                wheel.schedule(rs.getString(1), epochMillis(rs.getTimestamp(2).toLocalDateTime())));
+        if (wheel.size() > 0) {
+            System.out.println("[inventory-service] Scheduled expiry of " + wheel.size() + " active reservations");
+        }
+    }
+
+    /**
+     * Holds the items for {@code ttl} (the default if null, at most the configured maximum).
+     *
+     * @throws InsufficientStockException if a product hasn't enough unreserved stock; nothing is held
+     */
+    @Transactional
+    public StockReservation reserve(List<StockAdjustment> items, Duration ttl) {
+        SortedMap<String, Integer> quantities = new TreeMap<>();
+        for (StockAdjustment item : items == null ? List.<StockAdjustment>of() : items) {
+            if (item.getProductId() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Reserved quantities must be positive");
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        if (quantities.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to reserve");
+        }
+        if (ttl != null && (ttl.isNegative() || ttl.isZero())) {
+            throw new IllegalArgumentException("Reservation TTL must be positive");
+        }
+        SortedMap<String, Integer> cold = new TreeMap<>();
+        SortedMap<String, Integer> hot = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> (hotStock.isHot(productId) ? hot : cold).put(productId, quantity));
+
+        if (!cold.isEmpty()) {
+            holdInDatabase(cold);
+            changeFeed.record(cold.keySet());
+            stockCache.invalidate(cold.keySet());
+        }
+        if (!hot.isEmpty()) {
+            SortedMap<String, Integer> taken = negate(hot);
+            hotStock.apply(taken);
+            afterCompletion(committed -> {
+                if (!committed) {
+                    hotStock.revert(taken);
+                }
+            });
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Duration holdFor = ttl == null ? defaultTtl : ttl.compareTo(maxTtl) > 0 ? maxTtl : ttl;
+        StockReservation reservation = reservationRepository.save(StockReservation.builder()
+                .id(UUID.randomUUID().toString())
+                .items(quantities.entrySet().stream()
+                        .map(quantity -> new ReservedItem(quantity.getKey(), quantity.getValue()))
+                        .collect(Collectors.toCollection(ArrayList::new)))
+                .createdAt(now)
+                .expiresAt(now.plus(holdFor))
+                .build());
+        hot.forEach((productId, quantity) -> journal.record(productId, -quantity,
+                StockMovementReason.RESERVATION_HELD, reservation.getId()));
+        afterCompletion(committed -> {
+            if (committed) {
+                wheel.schedule(reservation.getId(), epochMillis(reservation.getExpiresAt()));
+            }
+        });
+        return reservation;
+    }
+
+    /**
+     * Turns the held units into a sale.
+     *
+     * @throws ReservationNotFoundException if it isn't active any more
+     */
+    @Transactional
+    public StockReservation commit(String reservationId) {
+        StockReservation reservation = reservationRepository.findForUpdate(reservationId)
+                .orElseThrow(() -> new ReservationNotFoundException(reservationId));
+        List<Object[]> rows = new ArrayList<>();
+        List<String> cold = new ArrayList<>();
+        for (ReservedItem item : sorted(reservation.getItems())) {
+            if (!hotStock.isHot(item.getProductId())) {
+                rows.add(new Object[] { item.getQuantity(), item.getQuantity(), item.getProductId() });
+                cold.add(item.getProductId());
+                journal.record(item.getProductId(), -item.getQuantity(),
+                        StockMovementReason.RESERVATION_COMMITTED, reservationId);
+            }
+        }
+        jdbcTemplate.batchUpdate(COMMIT, rows);
+        changeFeed.record(cold);
+        settle(reservation);
+        return reservation;
+    }
+
+    /**
+     * Gives the held units back.
+     *
+     * @throws ReservationNotFoundException if it isn't active any more
+     */
+    @Transactional
+    public void release(String reservationId) {
+        StockReservation reservation = reservationRepository.findForUpdate(reservationId)
+                .orElseThrow(() -> new ReservationNotFoundException(reservationId));
+        giveBack(reservation);
+    }
+
+    public StockReservation getReservation(String reservationId) {
+        return reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new ReservationNotFoundException(reservationId));
+    }
+
+    @Scheduled(fixedRateString = "${application.inventory.reservations.tick:PT1S}")
+    public void expireDue() {
+        List<String> due = wheel.advance(System.currentTimeMillis());
+        int expired = 0;
+        for (String reservationId : due) {
+            expired += expire(reservationId) ? 1 : 0;
+        }
+        if (expired > 0) {
+            System.out.println("[inventory-service] Expired " + expired + " stock reservations");
+        }
+    }
+
+    /** Expires overdue reservations no instance has on its wheel, e.g. one that was shut down. */
+    @Scheduled(fixedDelayString = "${application.inventory.reservations.sweep-interval:PT5M}",
+            initialDelayString = "${application.inventory.reservations.sweep-interval:PT5M}")
+    public void sweepOverdue() {
+        List<String> overdue = jdbcTemplate.queryForList(OVERDUE, String.class,
+                Timestamp.valueOf(LocalDateTime.now()), sweepBatchSize);
+        int expired = 0;
+        for (String reservationId : overdue) {
+            wheel.cancel(reservationId);
+            expired += expire(reservationId) ? 1 : 0;
+        }
+        if (expired > 0) {
+            System.out.println("[inventory-service] Sweep expired " + expired + " overdue stock reservations");
+        }
+    }
+
+    private boolean expire(String reservationId) {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                StockReservation reservation = reservationRepository.findForUpdate(reservationId).orElse(null);
+                if (reservation == null) {
+                    return false;  // committed or released in the meantime
+                }
+                giveBack(reservation);
+                return true;
+            }));
+        } catch (RuntimeException e) {
+            // Stays in the table; the sweep retries it
+            System.err.println("Failed to expire reservation " + reservationId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Caller holds the reservation's row lock
+    private void giveBack(StockReservation reservation) {
+        List<Object[]> rows = new ArrayList<>();
+        List<String> cold = new ArrayList<>();
+        SortedMap<String, Integer> hot = new TreeMap<>();
+        for (ReservedItem item : sorted(reservation.getItems())) {
+            if (hotStock.isHot(item.getProductId())) {
+                hot.put(item.getProductId(), item.getQuantity());
+                journal.record(item.getProductId(), item.getQuantity(),
+                        StockMovementReason.RESERVATION_RELEASED, reservation.getId());
+            } else {
+                rows.add(new Object[] { item.getQuantity(), item.getProductId() });
+                cold.add(item.getProductId());
+            }
+        }
+        jdbcTemplate.batchUpdate(UNRESERVE, rows);
+        changeFeed.record(cold);
+        settle(reservation);
+        if (!hot.isEmpty()) {
+            afterCompletion(committed -> {
+                if (committed) {
+                    hotStock.apply(hot);
+                }
+            });
+        }
+    }
+
+    private void settle(StockReservation reservation) {
+        reservationRepository.delete(reservation);
+        stockCache.invalidate(reservation.getItems().stream().map(ReservedItem::getProductId).toList());
+        afterCompletion(committed -> {
+            if (committed) {
+                wheel.cancel(reservation.getId());
+            }
+        });
+    }
+
+    private void holdInDatabase(SortedMap<String, Integer> quantities) {
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> rows.add(new Object[] { quantity, productId, quantity }));
+        int[] matched = jdbcTemplate.batchUpdate(RESERVE, rows);
+
+        Map<String, Integer> refused = new TreeMap<>();
+        int row = 0;
+        for (Map.Entry<String, Integer> quantity : quantities.entrySet()) {
+            if (matched[row++] == 0) {
+                refused.put(quantity.getKey(), quantity.getValue());
+            }
+        }
+        if (!refused.isEmpty()) {
+            Map<String, Integer> available = inventoryRepository.findByProductIdIn(refused.keySet()).stream()
+                    .collect(Collectors.toMap(InventoryItem::getProductId, InventoryItem::getAvailableCount));
+            throw new InsufficientStockException(refused.entrySet().stream()
+                    .map(shortage -> new StockShortage(shortage.getKey(), shortage.getValue(),
+                            available.getOrDefault(shortage.getKey(), 0)))
+                    .toList());
+        }
+    }
+
+    private static void afterCompletion(Consumer<Boolean> callback) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    // Rows are locked in product id order, as in InventoryService, so concurrent batches can't deadlock
+    private static List<ReservedItem> sorted(List<ReservedItem> items) {
+        return items.stream().sorted(Comparator.comparing(ReservedItem::getProductId)).toList();
+    }
+
+    private static SortedMap<String, Integer> negate(SortedMap<String, Integer> quantities) {
+        SortedMap<String, Integer> negated = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> negated.put(productId, -quantity));
+        return negated;
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,138 @@
+package com.icecream.inventory.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashed timing wheel: a ring of buckets, one per tick, each holding the keys due
+ * in that tick of any rotation. Scheduling and cancelling are O(1); advancing
+ * walks the keys in the buckets of the ticks that passed. A key due more than one
+ * rotation ahead stays in its bucket and is walked past once per rotation until
+ * the one it is due in, so size the wheel to span the longest deadline; then every
+ * key walked is due, and keys not yet due cost nothing.
+ * <p>
+ * The wheel doesn't keep time itself: {@link #advance(long)} is called with the
+ * current time, e.g. from a scheduled task, and catches up on any ticks missed.
+ */
+class TimingWheel<K> {
+
+    private final long tickMillis;
+    private final Node<K>[] buckets;
+    private final int mask;
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long nextTick;
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, int wheelSize, long nowMillis) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new Node[size];
+        this.mask = size - 1;
+        this.nextTick = nowMillis / tickMillis;
+    }
+
+    /** Schedules the key to expire at the first tick at or after the deadline, replacing any earlier schedule. */
+    void schedule(K key, long deadlineMillis) {
+        lock.lock();
+        try {
+            Node<K> existing = nodes.remove(key);
+            if (existing != null) {
+                unlink(existing);
+            }
+            Node<K> node = new Node<>(key, Math.max(Math.ceilDiv(deadlineMillis, tickMillis), nextTick));
+            nodes.put(key, node);
+            int bucket = (int) (node.tick & mask);
+            node.next = buckets[bucket];
+            if (node.next != null) {
+                node.next.prev = node;
+            }
+            buckets[bucket] = node;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void cancel(K key) {
+        lock.lock();
+        try {
+            Node<K> node = nodes.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes and returns the keys due at or before {@code nowMillis}. */
+    List<K> advance(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            long currentTick = nowMillis / tickMillis;
+            if (currentTick < nextTick) {
+                return expired;
+            }
+            // After a pause longer than a rotation every bucket is visited once
+            long ticks = Math.min(currentTick - nextTick + 1, buckets.length);
+            for (long tick = nextTick; tick < nextTick + ticks; tick++) {
+                Node<K> node = buckets[(int) (tick & mask)];
+                while (node != null) {
+                    Node<K> next = node.next;
+                    if (node.tick <= currentTick) {
+                        unlink(node);
+                        nodes.remove(node.key);
+                        expired.add(node.key);
+                    }
+                    node = next;
+                }
+            }
+            nextTick = currentTick + 1;
+        } finally {
+            lock.unlock();
+        }
+        return expired;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the lock
+    private void unlink(Node<K> node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            buckets[(int) (node.tick & mask)] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private final long tick;
+        private Node<K> prev;
+        private Node<K> next;
+
+        Node(K key, long tick) {
+            this.key = key;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.icecream.inventory.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Highest change version below which every change recorded by this instance has
+ * committed or rolled back. Versions come from an auto-increment column, so
+ * transactions can commit out of version order; a reader that went past a version
+ * still in flight would never see it. The feed only serves versions up to the
+ * watermark.
+ * <p>
+ * A transaction {@link #begin() begins} before it inserts, holding a placeholder
+ * one above the highest version known, which no version it is assigned can be
+ * below. It then swaps in its real versions, and {@link #end(Pending) ends} when it
+ * completes. Versions written by other instances are let in through
+ * {@link #observe(long)} once they have settled.
+ * <p>
+ * Past the highest settled version, the watermark only moves across versions this
+ * instance was assigned itself: a gap between them may hold another instance's
+ * version that hasn't committed yet, so it waits there until that has settled.
+ */
+class VersionWatermark {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Version -> number of in-flight holders, placeholders included
+    private final TreeMap<Long, Integer> inFlight = new TreeMap<>();
+    // Runs of consecutive versions assigned here above the watermark, first -> last
+    private final TreeMap<Long, Long> localRuns = new TreeMap<>();
+    private long highest;
+    private long settled;
+    private long watermark;
+
+    VersionWatermark(long committed) {
+        this.highest = committed;
+        this.settled = committed;
+        this.watermark = committed;
+    }
+
+    Pending begin() {
+        lock.lock();
+        try {
+            Pending pending = new Pending(highest + 1);
+            inFlight.merge(pending.version, 1, Integer::sum);
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the placeholder with the lowest version the transaction was assigned.
+     * {@code versions} must be sorted and not empty.
+     */
+    void assigned(Pending pending, long[] versions) {
+        lock.lock();
+        try {
+            release(pending.version);
+            pending.version = versions[0];
+            inFlight.merge(versions[0], 1, Integer::sum);
+            highest = Math.max(highest, versions[versions.length - 1]);
+            long first = versions[0];
+            for (int i = 1; i <= versions.length; i++) {
+                if (i == versions.length || versions[i] != versions[i - 1] + 1) {
+                    localRuns.merge(first, versions[i - 1], Math::max);
+                    if (i < versions.length) {
+                        first = versions[i];
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns true if the watermark moved. */
+    boolean end(Pending pending) {
+        lock.lock();
+        try {
+            release(pending.version);
+            return advance();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Raises the highest known version to one every writer is done with. Returns true if the watermark moved. */
+    boolean observe(long settled) {
+        lock.lock();
+        try {
+            this.settled = Math.max(this.settled, settled);
+            highest = Math.max(highest, settled);
+            return advance();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long get() {
+        lock.lock();
+        try {
+            return watermark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the lock
+    private boolean advance() {
+        long limit = inFlight.isEmpty() ? highest : Math.min(highest, inFlight.firstKey() - 1);
+        long next = Math.min(limit, settled);
+        for (Map.Entry<Long, Long> run : localRuns.entrySet()) {
+            if (run.getKey() > Math.max(next, watermark) + 1) {
+                break;  // the gap before this run may hold another instance's version
+            }
+            next = Math.max(next, Math.min(limit, run.getValue()));
+        }
+        if (next <= watermark) {
+            return false;
+        }
+        watermark = next;
+        localRuns.headMap(watermark, true).values().removeIf(last -> last <= watermark);
+        return true;
+    }
+
+    // Caller holds the lock
+    private void release(long version) {
+        inFlight.computeIfPresent(version, (key, holders) -> holders == 1 ? null : holders - 1);
+    }
+
+    static final class Pending {
+        private long version;
+
+        private Pending(long version) {
+            this.version = version;
+        }
+    }
+}
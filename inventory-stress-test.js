@@ -0,0 +1,136 @@
+// Stock adjustment stress test
+// Hammers one hot SKU from many concurrent workers and checks that no update is
+// lost and stock never goes below zero.
+//
+//   node inventory-stress-test.js [workers] [requests] [initialStock]
+//
+// Every request takes 1 unit. With initialStock lower than requests, exactly
+// initialStock requests must succeed, the rest must get 409, and the product must
+// end at 0.
+//
+// Set HOT_SKU to a product listed in the service's HOT_STOCK_PRODUCTS to run the
+// same scenario against it as well and compare the in-memory ledger with a plain
+// row update.
+
+const AUTH_URL = process.env.AUTH_URL || 'http://localhost:8081';
+const INVENTORY_URL = process.env.INVENTORY_URL || 'http://localhost:8084';
+const ADMIN = { email: 'admin@example.com', password: 'password123' };
+
+const WORKERS = parseInt(process.argv[2] || '32', 10);
+const REQUESTS = parseInt(process.argv[3] || '2000', 10);
+const INITIAL_STOCK = parseInt(process.argv[4] || '1500', 10);
+const COLD_SKU = `stress-${Date.now()}`;
+const HOT_SKU = process.env.HOT_SKU;
+
+async function login() {
+    const response = await fetch(`${AUTH_URL}/api/auth/login`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify(ADMIN)
+    });
+    if (!response.ok) {
+        throw new Error(`Login failed: ${response.status} ${await response.text()}`);
+    }
+    return (await response.json()).token;
+}
+
+async function adjust(token, sku, quantity) {
+    const started = performance.now();
+    const response = await fetch(`${INVENTORY_URL}/api/inventory/${sku}/adjust?adjustment=${quantity}`, {
+        method: 'POST',
+        headers: { Authorization: `Bearer ${token}` }
+    });
+    await response.text();
+    return { status: response.status, millis: performance.now() - started };
+}
+
+async function stock(sku) {
+    const response = await fetch(`${INVENTORY_URL}/api/inventory/${sku}`);
+    return response.ok ? (await response.json()).stockCount : null;
+}
+
+function percentile(sorted, p) {
+    return sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+}
+
+async function scenario(token, sku) {
+    console.log(`\nSKU ${sku}: ${WORKERS} workers, ${REQUESTS} decrements of 1, initial stock ${INITIAL_STOCK}`);
+
+    // The hot SKU may have stock left from an earlier run; bring it to the initial stock
+    const current = (await stock(sku)) || 0;
+    if (INITIAL_STOCK !== current) {
+        const seeded = await adjust(token, sku, INITIAL_STOCK - current);
+        if (seeded.status !== 200) {
+            throw new Error(`Seeding stock failed with ${seeded.status}`);
+        }
+    }
+
+    const counts = {};
+    const latencies = [];
+    let next = 0;
+    const started = performance.now();
+    await Promise.all(Array.from({ length: WORKERS }, async () => {
+        while (next < REQUESTS) {
+            next++;
+            try {
+                const result = await adjust(token, sku, -1);
+                counts[result.status] = (counts[result.status] || 0) + 1;
+                latencies.push(result.millis);
+            } catch (error) {
+                counts.error = (counts.error || 0) + 1;
+            }
+        }
+    }));
+    const elapsed = (performance.now() - started) / 1000;
+    const throughput = REQUESTS / elapsed;
+
+    const finalStock = await stock(sku);
+    const succeeded = counts[200] || 0;
+    const refused = counts[409] || 0;
+    latencies.sort((a, b) => a - b);
+
+    console.log('\n📊 Results');
+    console.log('-'.repeat(40));
+    console.log(`   Responses:   ${JSON.stringify(counts)}`);
+    console.log(`   Throughput:  ${throughput.toFixed(1)} req/s over ${elapsed.toFixed(2)} s`);
+    console.log(`   Latency:     p50 ${percentile(latencies, 0.5).toFixed(1)} ms, `
+        + `p99 ${percentile(latencies, 0.99).toFixed(1)} ms`);
+    console.log(`   Final stock: ${finalStock}`);
+
+    const expectedSuccesses = Math.min(REQUESTS, INITIAL_STOCK);
+    const checks = [
+        ['No lost updates', finalStock === INITIAL_STOCK - succeeded],
+        ['Stock never negative', finalStock !== null && finalStock >= 0],
+        ['Successes match available stock', succeeded === expectedSuccesses],
+        ['Every refusal is a 409', refused === REQUESTS - expectedSuccesses]
+    ];
+    console.log('\n✅ Correctness');
+    console.log('-'.repeat(40));
+    checks.forEach(([name, passed]) => console.log(`   ${passed ? '✓' : '✗'} ${name}`));
+
+    return { throughput, passed: checks.every(([, passed]) => passed) };
+}
+
+async function run() {
+    console.log('🔥 INVENTORY HOT-SKU STRESS TEST\n');
+    console.log('='.repeat(60));
+
+    const token = await login();
+    const cold = await scenario(token, COLD_SKU);
+    let passed = cold.passed;
+    if (HOT_SKU) {
+        const hot = await scenario(token, HOT_SKU);
+        passed = passed && hot.passed;
+        console.log('\n⚡ Ledger vs row update');
+        console.log('-'.repeat(40));
+        console.log(`   Row update:  ${cold.throughput.toFixed(1)} req/s`);
+        console.log(`   Hot ledger:  ${hot.throughput.toFixed(1)} req/s (${(hot.throughput / cold.throughput).toFixed(2)}x)`);
+    }
+
+    process.exitCode = passed ? 0 : 1;
+}
+
+run().catch(error => {
+    console.error('❌ Stress test failed:', error.message);
+    process.exitCode = 1;
+});
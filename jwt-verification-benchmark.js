@@ -0,0 +1,149 @@
+// JWT verification benchmark
+// Measures auth-service's CPU time per authenticated request, to show what the
+// verified-token cache saves over parsing and checking the signature every time.
+//
+//   node jwt-verification-benchmark.js <label> [requests] [workers]
+//
+// Run it once per configuration, restarting auth-service in between:
+//
+//   docker-compose up -d auth-service
+//   node jwt-verification-benchmark.js cached
+//   JWT_VERIFIED_CACHE_MAX_SIZE=0 docker-compose up -d auth-service
+//   node jwt-verification-benchmark.js uncached
+//
+// Every request validates the same bearer token, as a client does between logins.
+// CPU is auth-service's process.cpu.usage metric sampled through the run, so keep
+// other traffic off the service while measuring. Runs are saved to
+// benchmark-results.json and each run is compared with the earlier ones.
+
+const fs = require('fs');
+
+const AUTH_URL = process.env.AUTH_URL || 'http://localhost:8081';
+const ADMIN = { email: 'admin@example.com', password: 'password123' };
+const RESULTS_FILE = 'benchmark-results.json';
+
+const LABEL = process.argv[2];
+const REQUESTS = parseInt(process.argv[3] || '20000', 10);
+const WORKERS = parseInt(process.argv[4] || '16', 10);
+const WARMUP_REQUESTS = 2000;
+const SAMPLE_INTERVAL_MILLIS = 200;
+
+async function login() {
+    const response = await fetch(`${AUTH_URL}/api/auth/login`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify(ADMIN)
+    });
+    if (!response.ok) {
+        throw new Error(`Login failed: ${response.status} ${await response.text()}`);
+    }
+    return (await response.json()).token;
+}
+
+async function metric(name) {
+    const response = await fetch(`${AUTH_URL}/actuator/metrics/${name}`);
+    if (!response.ok) {
+        throw new Error(`Metric ${name} unavailable: ${response.status}`);
+    }
+    return (await response.json()).measurements[0].value;
+}
+
+async function validate(token) {
+    const started = performance.now();
+    const response = await fetch(`${AUTH_URL}/api/auth/validate`, {
+        headers: { Authorization: `Bearer ${token}` }
+    });
+    const valid = await response.json();
+    if (!valid) {
+        throw new Error('Token was rejected');
+    }
+    return performance.now() - started;
+}
+
+async function load(token, requests) {
+    const latencies = [];
+    let next = 0;
+    await Promise.all(Array.from({ length: WORKERS }, async () => {
+        while (next < requests) {
+            next++;
+            latencies.push(await validate(token));
+        }
+    }));
+    return latencies;
+}
+
+function percentile(sorted, p) {
+    return sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+}
+
+function save(result) {
+    const results = fs.existsSync(RESULTS_FILE) ? JSON.parse(fs.readFileSync(RESULTS_FILE, 'utf8')) : {};
+    results.jwt = results.jwt || {};
+    results.jwt[LABEL] = result;
+    fs.writeFileSync(RESULTS_FILE, JSON.stringify(results, null, 2));
+    return results.jwt;
+}
+
+async function run() {
+    if (!LABEL) {
+        throw new Error('Usage: node jwt-verification-benchmark.js <label> [requests] [workers]');
+    }
+    console.log('🔐 JWT VERIFICATION BENCHMARK\n');
+    console.log('='.repeat(60));
+    console.log(`Run "${LABEL}": ${REQUESTS} validations of one token, ${WORKERS} workers`);
+
+    const token = await login();
+    const cpus = await metric('system.cpu.count');
+    await load(token, WARMUP_REQUESTS);  // let the JIT settle first
+
+    const samples = [];
+    let sampling = true;
+    const sampler = (async () => {
+        while (sampling) {
+            samples.push(await metric('process.cpu.usage'));
+            await new Promise(resolve => setTimeout(resolve, SAMPLE_INTERVAL_MILLIS));
+        }
+    })();
+    const started = performance.now();
+    const latencies = await load(token, REQUESTS);
+    const elapsed = (performance.now() - started) / 1000;
+    sampling = false;
+    await sampler;
+
+    // process.cpu.usage is the share of all cores, so scale back up to CPU time
+    const usage = samples.reduce((sum, sample) => sum + sample, 0) / samples.length;
+    const cpuMicrosPerRequest = usage * cpus * elapsed * 1e6 / REQUESTS;
+    latencies.sort((a, b) => a - b);
+    const result = {
+        requests: REQUESTS,
+        throughput: REQUESTS / elapsed,
+        cpuMicrosPerRequest,
+        p50: percentile(latencies, 0.5),
+        p99: percentile(latencies, 0.99)
+    };
+
+    console.log('\n📊 Results');
+    console.log('-'.repeat(40));
+    console.log(`   Throughput:    ${result.throughput.toFixed(1)} req/s over ${elapsed.toFixed(2)} s`);
+    console.log(`   CPU/request:   ${cpuMicrosPerRequest.toFixed(1)} µs (${(usage * 100).toFixed(1)}% of ${cpus} cores)`);
+    console.log(`   Latency:       p50 ${result.p50.toFixed(2)} ms, p99 ${result.p99.toFixed(2)} ms`);
+
+    const runs = save(result);
+    const others = Object.keys(runs).filter(label => label !== LABEL);
+    if (others.length > 0) {
+        console.log('\n⚖️  Compared with earlier runs');
+        console.log('-'.repeat(40));
+        for (const label of others) {
+            const other = runs[label];
+            const saved = other.cpuMicrosPerRequest - cpuMicrosPerRequest;
+            console.log(`   vs ${label}: ${saved >= 0 ? 'saves' : 'costs'} ${Math.abs(saved).toFixed(1)} µs CPU per request `
+                + `(${(other.cpuMicrosPerRequest / cpuMicrosPerRequest).toFixed(2)}x), `
+                + `throughput ${(result.throughput / other.throughput).toFixed(2)}x`);
+        }
+    }
+}
+
+run().catch(error => {
+    console.error('❌ Benchmark failed:', error.message);
+    process.exitCode = 1;
+});
@@ -0,0 +1,217 @@
+// Order history response-time benchmark
+// Loads one customer with thousands of orders and times their history: the
+// first page in both views, a walk through every page, and the old endpoint
+// that returns the whole list.
+//
+//   node order-history-benchmark.js [orders] [samples] [workers]
+//
+// The orders go in through the bulk ingest endpoint as admin, 3 items each and
+// spread over two years, after stock for the benchmark SKUs is added so the
+// inventory adjustments they queue can apply. Pages deep in the history should
+// cost about the same as the first one; the full list grows with the customer.
+// Runs are saved to benchmark-results.json under the order count.
+
+const fs = require('fs');
+
+const AUTH_URL = process.env.AUTH_URL || 'http://localhost:8081';
+const ORDER_URL = process.env.ORDER_URL || 'http://localhost:8083';
+const INVENTORY_URL = process.env.INVENTORY_URL || 'http://localhost:8084';
+const ADMIN = { email: 'admin@example.com', password: 'password123' };
+const RESULTS_FILE = 'benchmark-results.json';
+
+const ORDERS = parseInt(process.argv[2] || '5000', 10);
+const SAMPLES = parseInt(process.argv[3] || '200', 10);
+const WORKERS = parseInt(process.argv[4] || '8', 10);
+const PAGE_SIZE = 20;
+const INGEST_CHUNK = 1000;
+const SKUS = ['vanilla', 'chocolate', 'pistachio'].map(flavour => `history-bench-${flavour}`);
+const EMAIL = `history-bench-${Date.now()}@example.com`;
+const HISTORY_SPAN_MILLIS = 2 * 365 * 24 * 3600 * 1000;
+
+async function login() {
+    const response = await fetch(`${AUTH_URL}/api/auth/login`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify(ADMIN)
+    });
+    if (!response.ok) {
+        throw new Error(`Login failed: ${response.status} ${await response.text()}`);
+    }
+    return (await response.json()).token;
+}
+
+async function seedStock(token) {
+    for (const sku of SKUS) {
+        const response = await fetch(`${INVENTORY_URL}/api/inventory/${sku}/adjust?adjustment=${ORDERS * 2}`, {
+            method: 'POST',
+            headers: { Authorization: `Bearer ${token}` }
+        });
+        if (!response.ok) {
+            throw new Error(`Stock for ${sku} failed: ${response.status} ${await response.text()}`);
+        }
+    }
+}
+
+// Local time without zone, as the service stores createdAt
+function timestamp(millis) {
+    const date = new Date(millis);
+    const pad = value => String(value).padStart(2, '0');
+    return `${date.getFullYear()}-${pad(date.getMonth() + 1)}-${pad(date.getDate())}`
+        + `T${pad(date.getHours())}:${pad(date.getMinutes())}:${pad(date.getSeconds())}`;
+}
+
+async function ingestOrders(token) {
+    const now = Date.now();
+    let inserted = 0;
+    for (let start = 0; start < ORDERS; start += INGEST_CHUNK) {
+        const lines = [];
+        for (let i = start; i < Math.min(ORDERS, start + INGEST_CHUNK); i++) {
+            lines.push(JSON.stringify({
+                userEmail: EMAIL,
+                items: SKUS.map((sku, index) => ({ productId: sku, productName: `Scoop ${index + 1}`, quantity: 1, price: 2.5 })),
+                shippingAddress: '1 Benchmark Lane',
+                createdAt: timestamp(now - Math.floor(i * HISTORY_SPAN_MILLIS / ORDERS))
+            }));
+        }
+        const response = await fetch(`${ORDER_URL}/api/orders/bulk`, {
+            method: 'POST',
+            headers: { 'Content-Type': 'application/x-ndjson', Authorization: `Bearer ${token}` },
+            body: lines.join('\n') + '\n'
+        });
+        if (!response.ok) {
+            throw new Error(`Bulk ingest failed: ${response.status} ${await response.text()}`);
+        }
+        const result = await response.json();
+        if (result.failed > 0) {
+            throw new Error(`Bulk ingest rejected ${result.failed} orders: ${JSON.stringify(result.failures)}`);
+        }
+        inserted += result.inserted;
+    }
+    return inserted;
+}
+
+async function timedGet(path) {
+    const started = performance.now();
+    const response = await fetch(`${ORDER_URL}${path}`);
+    const body = await response.text();
+    if (!response.ok) {
+        throw new Error(`GET ${path} failed: ${response.status} ${body}`);
+    }
+    return { millis: performance.now() - started, bytes: Buffer.byteLength(body), body: JSON.parse(body) };
+}
+
+async function sample(path, count) {
+    const latencies = [];
+    let bytes = 0;
+    let remaining = count;
+    await Promise.all(Array.from({ length: Math.min(WORKERS, count) }, async () => {
+        while (remaining-- > 0) {
+            const result = await timedGet(path);
+            latencies.push(result.millis);
+            bytes = result.bytes;
+        }
+    }));
+    return summarize(latencies, bytes);
+}
+
+function percentile(sorted, p) {
+    return sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+}
+
+function summarize(latencies, bytes) {
+    const sorted = [...latencies].sort((a, b) => a - b);
+    return { p50: percentile(sorted, 0.5), p95: percentile(sorted, 0.95), bytes };
+}
+
+function report(name, stats) {
+    console.log(`   ${name.padEnd(24)} p50 ${stats.p50.toFixed(1).padStart(8)} ms   p95 ${stats.p95.toFixed(1).padStart(8)} ms   `
+        + `${(stats.bytes / 1024).toFixed(1).padStart(9)} KB`);
+}
+
+async function walkHistory() {
+    const pages = [];
+    const ids = new Set();
+    let duplicates = 0;
+    let cursor = null;
+    do {
+        const query = `size=${PAGE_SIZE}&view=summary${cursor ? `&cursor=${encodeURIComponent(cursor)}` : ''}`;
+        const result = await timedGet(`/api/orders/user/${encodeURIComponent(EMAIL)}/history?${query}`);
+        for (const order of result.body.orders) {
+            if (ids.has(order.id)) {
+                duplicates++;
+            }
+            ids.add(order.id);
+        }
+        pages.push(result.millis);
+        cursor = result.body.nextCursor;
+    } while (cursor);
+    return { pages, seen: ids.size, duplicates };
+}
+
+function save(result) {
+    const results = fs.existsSync(RESULTS_FILE) ? JSON.parse(fs.readFileSync(RESULTS_FILE, 'utf8')) : {};
+    results.orderHistory = results.orderHistory || {};
+    results.orderHistory[ORDERS] = result;
+    fs.writeFileSync(RESULTS_FILE, JSON.stringify(results, null, 2));
+}
+
+async function run() {
+    console.log('📜 ORDER HISTORY BENCHMARK\n');
+    console.log('='.repeat(60));
+    console.log(`Customer ${EMAIL}: ${ORDERS} orders, ${SAMPLES} samples per request, ${WORKERS} workers`);
+
+    const token = await login();
+    await seedStock(token);
+    const ingestStarted = performance.now();
+    const inserted = await ingestOrders(token);
+    console.log(`Ingested ${inserted} orders in ${((performance.now() - ingestStarted) / 1000).toFixed(1)} s`);
+
+    const base = `/api/orders/user/${encodeURIComponent(EMAIL)}`;
+    console.log('\n📊 First page and full list');
+    console.log('-'.repeat(40));
+    const firstPage = await sample(`${base}/history?size=${PAGE_SIZE}`, SAMPLES);
+    report('History, full view', firstPage);
+    const firstSummaryPage = await sample(`${base}/history?size=${PAGE_SIZE}&view=summary`, SAMPLES);
+    report('History, summary view', firstSummaryPage);
+
+    // The first call loads every order; later ones may come from the history cache
+    const legacyCold = await timedGet(base);
+    report('Full list, first call', summarize([legacyCold.millis], legacyCold.bytes));
+    const legacy = await sample(base, Math.min(SAMPLES, 20));
+    report('Full list, repeated', legacy);
+
+    console.log('\n📖 Walking every page');
+    console.log('-'.repeat(40));
+    const walk = await walkHistory();
+    const firstPages = summarize(walk.pages.slice(0, Math.max(1, Math.floor(walk.pages.length / 10))), 0);
+    const deepPages = summarize(walk.pages.slice(-Math.max(1, Math.floor(walk.pages.length / 10))), 0);
+    const total = walk.pages.reduce((sum, millis) => sum + millis, 0);
+    console.log(`   ${walk.pages.length} pages of ${PAGE_SIZE} in ${(total / 1000).toFixed(2)} s, ${walk.seen} distinct orders`);
+    console.log(`   First 10% of pages: p50 ${firstPages.p50.toFixed(1)} ms, p95 ${firstPages.p95.toFixed(1)} ms`);
+    console.log(`   Last 10% of pages:  p50 ${deepPages.p50.toFixed(1)} ms, p95 ${deepPages.p95.toFixed(1)} ms`);
+
+    // Deep pages may be a little slower (colder rows) but must not grow with their offset
+    const checks = [
+        ['Every order ingested', inserted === ORDERS],
+        ['Full list returns every order', legacyCold.body.length === ORDERS],
+        ['Page walk sees every order once', walk.seen === ORDERS && walk.duplicates === 0],
+        ['Deep pages cost about the same as the first', deepPages.p50 <= Math.max(firstPages.p50 * 3, firstPages.p50 + 20)]
+    ];
+    console.log('\n✅ Checks');
+    console.log('-'.repeat(40));
+    checks.forEach(([name, passed]) => console.log(`   ${passed ? '✓' : '✗'} ${name}`));
+
+    save({
+        firstPage,
+        firstSummaryPage,
+        fullListFirstCallMillis: legacyCold.millis,
+        fullList: legacy,
+        walk: { pages: walk.pages.length, totalMillis: total, firstPages, deepPages }
+    });
+    process.exitCode = checks.every(([, passed]) => passed) ? 0 : 1;
+}
+
+run().catch(error => {
+    console.error('❌ Benchmark failed:', error.message);
+    process.exitCode = 1;
+});
@@ -0,0 +1,7 @@
+package com.icecream.order.client;
+
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
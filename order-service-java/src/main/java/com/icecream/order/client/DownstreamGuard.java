@@ -0,0 +1,140 @@
+package com.icecream.order.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Isolates each downstream service behind its own bulkhead and circuit breaker.
+ * <p>
+ * The bulkhead caps concurrent calls and rejects at once when full, so a slow
+ * dependency holds at most that many request threads. The breaker opens when too
+ * many recent calls fail or are slow, and while open calls are rejected without
+ * touching the network. 4xx responses are the caller's fault and don't count
+ * against the dependency. Calls are also refused once the current request's
+ * deadline has passed.
+ * <p>
+ * Breaker state and bulkhead usage are published as {@code resilience4j.*} meters;
+ * rejections as {@code order.downstream.rejected} tagged by dependency and reason.
+ */
+@Component
+public class DownstreamGuard {
+
+    public static final String INVENTORY = "inventory";
+    public static final String NOTIFICATION = "notification";
+
+    private final Map<String, Guarded> guards;
+    @Getter
+    private final Duration waitInOpenState;
+
+    public DownstreamGuard(
+            MeterRegistry meterRegistry,
+            @Value("${application.downstream.inventory.max-concurrent-calls:20}") int inventoryConcurrency,
+            @Value("${application.downstream.notification.max-concurrent-calls:10}") int notificationConcurrency,
+            @Value("${application.downstream.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${application.downstream.circuit-breaker.slow-call-threshold:PT2S}") Duration slowCallThreshold,
+            @Value("${application.downstream.circuit-breaker.slow-call-rate-threshold:80}") float slowCallRateThreshold,
+            @Value("${application.downstream.circuit-breaker.window-size:50}") int windowSize,
+            @Value("${application.downstream.circuit-breaker.minimum-calls:20}") int minimumCalls,
+            @Value("${application.downstream.circuit-breaker.wait-in-open-state:PT10S}") Duration waitInOpenState) {
+        this.waitInOpenState = waitInOpenState;
+        CircuitBreakerRegistry breakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(windowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallThreshold)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .waitDurationInOpenState(waitInOpenState)
+                .permittedNumberOfCallsInHalfOpenState(Math.max(1, minimumCalls / 4))
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .ignoreExceptions(HttpClientErrorException.class, BulkheadFullException.class,
+                        DeadlineExceededException.class)
+                .build());
+        BulkheadRegistry bulkheads = BulkheadRegistry.ofDefaults();
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(breakers).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+
+        this.guards = Map.of(
+                INVENTORY, guard(INVENTORY, inventoryConcurrency, breakers, bulkheads, meterRegistry),
+                NOTIFICATION, guard(NOTIFICATION, notificationConcurrency, breakers, bulkheads, meterRegistry));
+    }
+
+    /**
+     * Runs the call if the dependency's breaker and bulkhead permit it.
+     *
+     * @throws CallNotPermittedException if the breaker is open
+     * @throws BulkheadFullException if the dependency already has its maximum of calls in flight
+     * @throws DeadlineExceededException if the current request has run out of time
+     */
+    public <T> T call(String dependency, Supplier<T> call) {
+        Guarded guarded = guards.get(dependency);
+        try {
+            RequestDeadline.check(dependency);
+        } catch (DeadlineExceededException e) {
+            guarded.deadlineRejections.increment();
+            throw e;
+        }
+        return CircuitBreaker.decorateSupplier(guarded.breaker,
+                Bulkhead.decorateSupplier(guarded.bulkhead, call)).get();
+    }
+
+    public void run(String dependency, Runnable call) {
+        call(dependency, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /** Whether the failure was a rejection by the guard rather than a failed call. */
+    public static boolean isRejection(Throwable error) {
+        return error instanceof CallNotPermittedException
+                || error instanceof BulkheadFullException
+                || error instanceof DeadlineExceededException;
+    }
+
+    private static Guarded guard(String dependency, int maxConcurrentCalls, CircuitBreakerRegistry breakers,
+                                 BulkheadRegistry bulkheads, MeterRegistry meterRegistry) {
+        CircuitBreaker breaker = breakers.circuitBreaker(dependency);
+        Bulkhead bulkhead = bulkheads.bulkhead(dependency, BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        Counter openRejections = rejections(meterRegistry, dependency, "circuit-open");
+        Counter fullRejections = rejections(meterRegistry, dependency, "bulkhead-full");
+        breaker.getEventPublisher()
+                .onCallNotPermitted(event -> openRejections.increment())
+                .onStateTransition(event -> System.out.println("[order-service] Circuit breaker '" + dependency
+                        + "' " + event.getStateTransition()));
+        bulkhead.getEventPublisher().onCallRejected(event -> fullRejections.increment());
+        return new Guarded(breaker, bulkhead, rejections(meterRegistry, dependency, "deadline"));
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String dependency, String reason) {
+        return Counter.builder("order.downstream.rejected")
+                .description("Downstream calls refused without being attempted")
+                .tag("dependency", dependency)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private record Guarded(CircuitBreaker breaker, Bulkhead bulkhead, Counter deadlineRejections) {
+    }
+}
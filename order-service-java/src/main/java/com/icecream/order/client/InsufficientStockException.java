@@ -0,0 +1,11 @@
+package com.icecream.order.client;
+
+/**
+ * inventory-service refused a decrement because it would take stock below zero.
+ * Nothing was adjusted; the message carries its list of short products.
+ */
+public class InsufficientStockException extends IllegalStateException {
+    public InsufficientStockException(String shortages) {
+        super("Insufficient stock: " + shortages);
+    }
+}
@@ -0,0 +1,49 @@
+package com.icecream.order.client;
+
+import com.icecream.order.dto.StockAdjustment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+@Component
+public class InventoryClient {
+    private final RestTemplate restTemplate;
+    private final DownstreamGuard guard;
+    private final ServiceTokenProvider serviceToken;
+    private final String adjustUrl;
+
+    public InventoryClient(
+            RestTemplate restTemplate,
+            DownstreamGuard guard,
+            ServiceTokenProvider serviceToken,
+            @Value("${application.downstream.inventory.url:http://inventory-service:8084}") String baseUrl) {
+        this.restTemplate = restTemplate;
+        this.guard = guard;
+        this.serviceToken = serviceToken;
+        this.adjustUrl = baseUrl + "/api/inventory/adjust";
+    }
+
+    /**
+     * Adjusts stock with this service's own credential, in a request or when
+     * replaying from the outbox. Adjustments carrying a reference inventory-service
+     * has already applied are skipped there, so a retry after an unclear outcome
+     * (timeout, open breaker) can't deduct stock twice.
+     *
+     * @throws InsufficientStockException if a decrement would take a product below zero; nothing is adjusted
+     */
+    public void adjustStock(List<StockAdjustment> adjustments) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(serviceToken.getToken());
+        try {
+            guard.run(DownstreamGuard.INVENTORY, () ->
+                    restTemplate.postForObject(adjustUrl, new HttpEntity<>(adjustments, headers), Object.class));
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new InsufficientStockException(e.getResponseBodyAsString());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.icecream.order.client;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class NotificationClient {
+    private static final String SEND_URL = "http://notification-service:8001/api/notifications/send";
+
+    private final RestTemplate restTemplate;
+    private final DownstreamGuard guard;
+
+    public void send(Map<String, String> notification) {
+        guard.run(DownstreamGuard.NOTIFICATION, () -> restTemplate.postForObject(SEND_URL, notification, Object.class));
+    }
+}
@@ -0,0 +1,43 @@
+package com.icecream.order.client;
+
+import java.time.Duration;
+
+/**
+ * Deadline of the request being handled on the current thread. Downstream calls
+ * made while handling it get only the time that is left, so one slow dependency
+ * cannot make the whole request overrun.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void start(Duration budget) {
+        DEADLINE_NANOS.set(System.nanoTime() + budget.toNanos());
+    }
+
+    public static void clear() {
+        DEADLINE_NANOS.remove();
+    }
+
+    /**
+     * Time left before the deadline, or null when the current thread has none
+     * (e.g. background work such as the outbox dispatcher).
+     */
+    public static Duration remaining() {
+        Long deadline = DEADLINE_NANOS.get();
+        return deadline == null ? null : Duration.ofNanos(deadline - System.nanoTime());
+    }
+
+    /**
+     * @throws DeadlineExceededException if the current request's deadline has passed
+     */
+    public static void check(String dependency) {
+        Duration remaining = remaining();
+        if (remaining != null && (remaining.isNegative() || remaining.isZero())) {
+            throw new DeadlineExceededException("Request deadline passed before calling " + dependency);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.icecream.order.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This service's own token from auth-service, for calls it makes on its own behalf
+ * (stock adjustments, including outbox replays) rather than with a user's token.
+ * The token is cached and renewed once half its lifetime has passed.
+ */
+@Component
+public class ServiceTokenProvider {
+    private static final String TOKEN_URL = "http://auth-service:8081/api/auth/service-token";
+
+    private final RestTemplate restTemplate;
+    private final String clientId;
+    private final String clientSecret;
+    // Not synchronized: renewing does network I/O and would pin a virtual thread
+    private final ReentrantLock renewLock = new ReentrantLock();
+    private volatile CachedToken cached;
+
+    public ServiceTokenProvider(
+            RestTemplate restTemplate,
+            @Value("${application.service-credentials.client-id:order-service}") String clientId,
+            @Value("${application.service-credentials.client-secret:}") String clientSecret) {
+        this.restTemplate = restTemplate;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+    }
+
+    public String getToken() {
+        CachedToken current = cached;
+        if (current != null && System.currentTimeMillis() < current.renewAt()) {
+            return current.token();
+        }
+        renewLock.lock();
+        try {
+            current = cached;
+            if (current != null && System.currentTimeMillis() < current.renewAt()) {
+                return current.token();  // renewed by another thread while we waited
+            }
+            long requestedAt = System.currentTimeMillis();
+            TokenResponse response = restTemplate.postForObject(TOKEN_URL,
+                    Map.of("clientId", clientId, "clientSecret", clientSecret), TokenResponse.class);
+            if (response == null || response.token() == null) {
+                throw new IllegalStateException("auth-service returned no service token");
+            }
+            cached = new CachedToken(response.token(), requestedAt + response.expiresInSeconds() * 1000 / 2);
+            return response.token();
+        } finally {
+            renewLock.unlock();
+        }
+    }
+
+    private record TokenResponse(String token, long expiresInSeconds) {
+    }
+
+    private record CachedToken(String token, long renewAt) {
+    }
+}
@@ -1,13 +1,40 @@
 package com.icecream.order.config;
 
+import com.icecream.order.client.RequestDeadline;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
 public class ApplicationConfig {
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(HttpComponentsClientHttpRequestFactory httpRequestFactory) {
+        RestTemplate restTemplate = new RestTemplate(httpRequestFactory);
+        // Downstream services verify tokens too, so calls made on behalf of a user carry their token
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication instanceof JwtAuthenticationToken jwt
+                    && !request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)) {
+                request.getHeaders().setBearerAuth(jwt.getToken().getTokenValue());
+            }
+            return execution.execute(request, body);
+        });
+        // Tell the downstream service how long the caller is still waiting
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            Duration remaining = RequestDeadline.remaining();
+            if (remaining != null) {
+                request.getHeaders().set(RequestDeadlineFilter.TIMEOUT_HEADER,
+                        String.valueOf(Math.max(remaining.toMillis(), 1)));
+            }
+            return execution.execute(request, body);
+        });
+        return restTemplate;
     }
 }
@@ -0,0 +1,122 @@
+package com.icecream.order.config;
+
+import com.icecream.order.client.RequestDeadline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HeaderElements;
+import org.apache.hc.core5.http.message.MessageSupport;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.time.Duration;
+import java.util.Iterator;
+
+/**
+ * HTTP client for calls to other services: pooled keep-alive connections (one pool
+ * per target host), bounded waits at every step, and gzip responses unless
+ * disabled. Pool utilisation is published as {@code httpcomponents.httpclient.pool.*}.
+ * Calls made while handling a request wait no longer than the request has left.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager(
+            MeterRegistry meterRegistry,
+            @Value("${application.http-client.max-connections:200}") int maxConnections,
+            @Value("${application.http-client.max-connections-per-host:50}") int maxConnectionsPerHost,
+            @Value("${application.http-client.connect-timeout:PT2S}") Duration connectTimeout,
+            @Value("${application.http-client.read-timeout:PT5S}") Duration readTimeout,
+            @Value("${application.http-client.connection-ttl:PT5M}") Duration connectionTtl) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerHost)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(connectionTtl))
+                        // Re-check connections idle this long before reuse, in case the server closed them
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "inter-service").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(
+            PoolingHttpClientConnectionManager connectionManager,
+            @Value("${application.http-client.pool-wait-timeout:PT1S}") Duration poolWaitTimeout,
+            @Value("${application.http-client.read-timeout:PT5S}") Duration readTimeout,
+            @Value("${application.http-client.keep-alive:PT30S}") Duration keepAlive,
+            @Value("${application.http-client.compression:true}") boolean compression) {
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolWaitTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                // Honour the server's Keep-Alive timeout if it sends one, otherwise keep idle connections this long
+                .setKeepAliveStrategy((response, context) -> {
+                    Iterator<HeaderElement> elements = MessageSupport.iterate(response, HeaderElements.KEEP_ALIVE);
+                    while (elements.hasNext()) {
+                        HeaderElement element = elements.next();
+                        if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                            try {
+                                return TimeValue.ofSeconds(Long.parseLong(element.getValue()));
+                            } catch (NumberFormatException ignored) {
+                                // fall through to the default
+                            }
+                        }
+                    }
+                    return TimeValue.of(keepAlive);
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(keepAlive));
+        if (!compression) {
+            builder.disableContentCompression();
+        }
+        return builder.build();
+    }
+
+    @Bean
+    public HttpComponentsClientHttpRequestFactory httpRequestFactory(
+            CloseableHttpClient httpClient,
+            @Value("${application.http-client.pool-wait-timeout:PT1S}") Duration poolWaitTimeout,
+            @Value("${application.http-client.read-timeout:PT5S}") Duration readTimeout) {
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        factory.setHttpContextFactory((method, uri) -> {
+            Duration remaining = RequestDeadline.remaining();
+            if (remaining == null) {
+                return null;  // not on a request thread: client defaults apply
+            }
+            // A request config in the context replaces the client default entirely, so set both timeouts
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.of(atMost(poolWaitTimeout, remaining)))
+                    .setResponseTimeout(Timeout.of(atMost(readTimeout, remaining)))
+                    .build());
+            return context;
+        });
+        return factory;
+    }
+
+    private static Duration atMost(Duration configured, Duration remaining) {
+        // Never zero: HttpClient reads a zero timeout as "wait forever"
+        Duration bounded = remaining.compareTo(configured) < 0 ? remaining : configured;
+        return bounded.toMillis() < 1 ? Duration.ofMillis(1) : bounded;
+    }
+}
@@ -0,0 +1,63 @@
+package com.icecream.order.config;
+
+import com.icecream.order.client.RequestDeadline;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Gives every request an overall deadline. Callers may ask for a shorter one with
+ * an {@code X-Request-Timeout} header in milliseconds, but not a longer one.
+ * <p>
+ * Bulk ingestion is exempt: it streams for as long as the upload lasts, and each
+ * of its chunks must still reach inventory-service to have its stock checked.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private final Duration defaultDeadline;
+
+    public RequestDeadlineFilter(@Value("${application.orders.request-deadline:PT3S}") Duration defaultDeadline) {
+        this.defaultDeadline = defaultDeadline;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return "POST".equals(request.getMethod()) && "/api/orders/bulk".equals(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+        Duration budget = defaultDeadline;
+        String requested = request.getHeader(TIMEOUT_HEADER);
+        if (requested != null) {
+            try {
+                Duration asked = Duration.ofMillis(Long.parseLong(requested.trim()));
+                if (asked.compareTo(budget) < 0 && !asked.isNegative()) {
+                    budget = asked;
+                }
+            } catch (NumberFormatException ignored) {
+                // keep the default
+            }
+        }
+        RequestDeadline.start(budget);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+}
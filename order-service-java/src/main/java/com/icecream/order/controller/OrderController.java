@@ -1,18 +1,30 @@
 package com.icecream.order.controller;
 
+import com.icecream.order.dto.OrderPage;
 import com.icecream.order.model.Order;
+import com.icecream.order.model.OrderStatus;
+import com.icecream.order.service.OrderEventBroadcaster;
 import com.icecream.order.service.OrderService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/orders")
 @RequiredArgsConstructor
 public class OrderController {
     private final OrderService service;
+    private final OrderEventBroadcaster eventBroadcaster;
 
     @PostMapping
     public ResponseEntity<Order> placeOrder(@RequestBody Order order) {
@@ -23,4 +35,65 @@ public class OrderController {
     public ResponseEntity<List<Order>> getUserOrders(@PathVariable String email) {
         return ResponseEntity.ok(service.getOrdersByUser(email));
     }
+
+    /**
+     * Paginated order history, newest first. Pass the returned {@code nextCursor} to
+     * get the next page; {@code view=summary} omits the items.
+     */
+    @GetMapping("/user/{email}/history")
+    public ResponseEntity<OrderPage<?>> getUserOrderHistory(
+            @PathVariable String email,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "full") String view) {
+        if ("summary".equalsIgnoreCase(view)) {
+            return ResponseEntity.ok(service.getOrderSummaries(email, cursor, size));
+        }
+        return ResponseEntity.ok(service.getOrderHistory(email, cursor, size));
+    }
+
+    /**
+     * Live status changes of the user's orders as server-sent events. Reconnecting
+     * clients send {@code Last-Event-ID} to receive what they missed; a
+     * {@code resync} event means they should reload their history instead. Only the
+     * user themselves or an admin may subscribe.
+     */
+    @GetMapping(value = "/user/{email}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamOrderEvents(
+            @PathVariable String email,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @AuthenticationPrincipal Jwt jwt) {
+        if (!email.equalsIgnoreCase(jwt.getSubject()) && !"ADMIN".equals(jwt.getClaimAsString("role"))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        SseEmitter emitter = eventBroadcaster.subscribe(email, lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")  // don't let proxies buffer the stream
+                .body(emitter);
+    }
+
+    @PutMapping("/{id}/status")
+    public ResponseEntity<Order> updateStatus(@PathVariable Long id, @RequestBody Map<String, String> body) {
+        String status = body.get("status");
+        if (status == null || status.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        Order updated = service.updateStatus(id, OrderStatus.valueOf(status.trim().toUpperCase(Locale.ROOT)));
+        return updated == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(updated);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
 }
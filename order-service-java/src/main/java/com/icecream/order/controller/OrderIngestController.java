@@ -0,0 +1,37 @@
+package com.icecream.order.controller;
+
+import com.icecream.order.dto.OrderIngestResult;
+import com.icecream.order.service.OrderIngestService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/orders")
+@RequiredArgsConstructor
+public class OrderIngestController {
+
+    private final OrderIngestService service;
+
+    @PostMapping(value = "/bulk", consumes = "application/x-ndjson")
+    public ResponseEntity<OrderIngestResult> ingestNdjson(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(service.ingestNdjson(request.getInputStream()));
+    }
+
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<OrderIngestResult> ingestJsonArray(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(service.ingestJsonArray(request.getInputStream()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
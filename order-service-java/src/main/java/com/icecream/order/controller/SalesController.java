@@ -0,0 +1,39 @@
+package com.icecream.order.controller;
+
+import com.icecream.order.dto.SalesBucket;
+import com.icecream.order.model.SalesGranularity;
+import com.icecream.order.service.SalesAggregator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/orders/sales")
+@RequiredArgsConstructor
+public class SalesController {
+
+    private final SalesAggregator aggregator;
+
+    /**
+     * Units and revenue per product and bucket, served from memory. Defaults to the
+     * last 24 hours for HOUR and the last 30 days for DAY.
+     */
+    @GetMapping
+    public ResponseEntity<List<SalesBucket>> getSales(
+            @RequestParam(defaultValue = "DAY") SalesGranularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String productId) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now().plusSeconds(1);
+        LocalDateTime start = from != null ? from
+                : granularity == SalesGranularity.HOUR ? end.minusHours(24) : end.minusDays(30);
+        return ResponseEntity.ok(aggregator.query(granularity, start, end, productId));
+    }
+}
@@ -0,0 +1,15 @@
+package com.icecream.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderIngestFailure {
+    private long row; // 1-based position in the submitted stream
+    private String reason;
+}
@@ -0,0 +1,23 @@
+package com.icecream.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderIngestResult {
+    private long read;
+    private long inserted;
+    private long failed;
+    private long elapsedMillis;
+    // First failures only, up to the configured limit; {@code failed} has the full count
+    @Builder.Default
+    private List<OrderIngestFailure> failures = new ArrayList<>();
+}
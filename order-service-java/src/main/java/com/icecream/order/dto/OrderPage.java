@@ -0,0 +1,21 @@
+package com.icecream.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a user's order history, newest first. {@code nextCursor} is passed
+ * back to fetch the following page and is null on the last one.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderPage<T> {
+    private List<T> orders;
+    private String nextCursor;
+}
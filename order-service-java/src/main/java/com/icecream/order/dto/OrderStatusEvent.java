@@ -0,0 +1,20 @@
+package com.icecream.order.dto;
+
+import com.icecream.order.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderStatusEvent {
+    private Long orderId;
+    private OrderStatus status;
+    private OrderStatus previousStatus; // null when the order was just placed
+    private LocalDateTime occurredAt;
+}
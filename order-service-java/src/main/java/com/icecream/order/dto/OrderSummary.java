@@ -0,0 +1,29 @@
+package com.icecream.order.dto;
+
+import com.icecream.order.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An order without its items, for list views.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderSummary {
+    private Long id;
+    private Double totalAmount;
+    private OrderStatus status;
+    private LocalDateTime createdAt;
+    private int itemCount;
+
+    // JPQL constructor expression: size() yields a Long count
+    public OrderSummary(Long id, Double totalAmount, OrderStatus status, LocalDateTime createdAt, Long itemCount) {
+        this(id, totalAmount, status, createdAt, itemCount.intValue());
+    }
+}
@@ -0,0 +1,19 @@
+package com.icecream.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesBucket {
+    private LocalDateTime bucketStart;
+    private String productId;
+    private long units;
+    private double revenue;
+}
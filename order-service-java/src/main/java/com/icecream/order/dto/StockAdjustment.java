@@ -0,0 +1,17 @@
+package com.icecream.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockAdjustment {
+    private String productId;
+    private int quantity;
+    // Same for every delivery of one adjustment, so inventory-service applies it once per product
+    private String reference;
+}
@@ -0,0 +1,35 @@
+package com.icecream.order.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A month of orders that was moved out of the database into an archive file by
+ * {@link com.icecream.order.service.OrderPartitionManager}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "order_archive_months", schema = "order_schema")
+public class ArchivedOrderMonth {
+
+    @Id
+    private LocalDate monthStart;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    private long orderCount;
+    private long itemCount;
+    private Long minOrderId;
+    private Long maxOrderId;
+    private LocalDateTime archivedAt;
+}
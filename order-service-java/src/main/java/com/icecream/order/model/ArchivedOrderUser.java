@@ -0,0 +1,35 @@
+package com.icecream.order.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Which archived months hold orders of a user, so reading a user's old orders
+ * only opens the files that contain some.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "order_archive_users", schema = "order_schema",
+        indexes = @Index(name = "idx_order_archive_users_email", columnList = "userEmail, monthStart"))
+public class ArchivedOrderUser {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate monthStart;
+
+    @Column(nullable = false)
+    private String userEmail;
+
+    private int orderCount;
+}
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -14,7 +15,8 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "orders", schema = "order_schema")
+@Table(name = "orders", schema = "order_schema",
+        indexes = @Index(name = "idx_orders_user_created", columnList = "userEmail, createdAt, id"))
 public class Order {
 
     @Id
@@ -24,13 +26,25 @@ public class Order {
     @Column(nullable = false)
     private String userEmail;
 
+    // Orders loaded without a fetch join initialise their items in batches, not one query each.
+    // No foreign key from Hibernate: once partitioned, items reference (id, created_at), see OrderPartitionManager
     @OneToMany(cascade = CascadeType.ALL)
-    @JoinColumn(name = "order_id")
+    @JoinColumn(name = "order_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    @BatchSize(size = 50)
     private List<OrderItem> items;
 
     private Double totalAmount;
 
-    private String status; // PENDING, PAID, SHIPPED, DELIVERED
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
     private String shippingAddress;
     private LocalDateTime createdAt;
+
+    // Runs before the items are cascaded, so they are inserted with the partition key
+    @PrePersist
+    void stampItems() {
+        if (items != null) {
+            items.forEach(item -> item.setOrderCreatedAt(createdAt));
+        }
+    }
 }
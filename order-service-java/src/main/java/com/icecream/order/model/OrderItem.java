@@ -1,17 +1,21 @@
 package com.icecream.order.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "order_items", schema = "order_schema")
+@Table(name = "order_items", schema = "order_schema",
+        indexes = @Index(name = "idx_order_items_order_id", columnList = "order_id"))
 public class OrderItem {
 
     @Id
@@ -22,4 +26,9 @@ public class OrderItem {
     private String productName;
     private Integer quantity;
     private Double price;
+
+    // Copy of the order's createdAt, set when the order is persisted; order_items is
+    // range-partitioned on it so an order and its items land in the same month
+    @JsonIgnore
+    private LocalDateTime orderCreatedAt;
 }
@@ -0,0 +1,29 @@
+package com.icecream.order.model;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Lifecycle of an order. DELIVERED and CANCELLED are final.
+ */
+public enum OrderStatus {
+    PENDING,
+    PLACED,
+    PAID,
+    SHIPPED,
+    DELIVERED,
+    CANCELLED;
+
+    private Set<OrderStatus> next = Set.of();
+
+    static {
+        PENDING.next = EnumSet.of(PLACED, CANCELLED);
+        PLACED.next = EnumSet.of(PAID, CANCELLED);
+        PAID.next = EnumSet.of(SHIPPED, CANCELLED);
+        SHIPPED.next = EnumSet.of(DELIVERED);
+    }
+
+    public boolean canTransitionTo(OrderStatus target) {
+        return next.contains(target);
+    }
+}
@@ -0,0 +1,48 @@
+package com.icecream.order.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A side effect of an order, written in the same transaction as the order and
+ * delivered later by {@link com.icecream.order.service.OutboxDispatcher}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "outbox_events", schema = "order_schema",
+        indexes = @Index(name = "idx_outbox_status_next_attempt", columnList = "status, nextAttemptAt"))
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxEventType type;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxStatus status;
+
+    private int attempts;
+    private LocalDateTime nextAttemptAt;
+    // Set while a dispatcher is delivering the event; once it passes, another may take it over
+    private LocalDateTime claimedUntil;
+    private LocalDateTime createdAt;
+    private LocalDateTime dispatchedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
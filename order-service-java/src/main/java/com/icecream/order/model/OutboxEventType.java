@@ -0,0 +1,6 @@
+package com.icecream.order.model;
+
+public enum OutboxEventType {
+    NOTIFICATION,
+    INVENTORY_ADJUSTMENT
+}
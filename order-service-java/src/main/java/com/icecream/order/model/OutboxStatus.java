@@ -0,0 +1,7 @@
+package com.icecream.order.model;
+
+public enum OutboxStatus {
+    PENDING,
+    DISPATCHED,
+    DEAD
+}
@@ -0,0 +1,19 @@
+package com.icecream.order.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum SalesGranularity {
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    SalesGranularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public LocalDateTime bucketOf(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+}
@@ -0,0 +1,25 @@
+package com.icecream.order.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An order already included in {@link SalesSummary}, kept for orders just below
+ * the {@link SalesWatermark}: ids commit out of order, so a lower id can still be
+ * missing from the totals when a higher one is flushed. Startup replay skips the
+ * orders listed here.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "sales_recorded_orders", schema = "order_schema")
+public class SalesRecordedOrder {
+
+    @Id
+    private Long orderId;
+}
@@ -0,0 +1,42 @@
+package com.icecream.order.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Units sold and revenue of one product in one hour or day. Maintained by
+ * {@link com.icecream.order.service.SalesAggregator}; revenue is kept in cents so
+ * totals add up exactly.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "sales_summary", schema = "order_schema",
+        uniqueConstraints = @UniqueConstraint(name = "uk_sales_summary_bucket",
+                columnNames = { "granularity", "bucketStart", "productId" }))
+public class SalesSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private SalesGranularity granularity;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private String productId;
+
+    private long units;
+    private long revenueCents;
+}
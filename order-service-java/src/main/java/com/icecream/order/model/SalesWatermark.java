@@ -0,0 +1,30 @@
+package com.icecream.order.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single row recording the highest order id already included in
+ * {@link SalesSummary}. Orders above it are replayed on startup.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "sales_watermark", schema = "order_schema")
+public class SalesWatermark {
+
+    public static final long SINGLETON_ID = 1L;
+
+    @Id
+    private Long id;
+
+    private long lastOrderId;
+    private LocalDateTime flushedAt;
+}
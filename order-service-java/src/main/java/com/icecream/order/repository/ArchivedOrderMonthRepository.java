@@ -0,0 +1,12 @@
+package com.icecream.order.repository;
+
+import com.icecream.order.model.ArchivedOrderMonth;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ArchivedOrderMonthRepository extends JpaRepository<ArchivedOrderMonth, LocalDate> {
+
+    List<ArchivedOrderMonth> findAllByOrderByMonthStartAsc();
+}
@@ -0,0 +1,15 @@
+package com.icecream.order.repository;
+
+import com.icecream.order.model.ArchivedOrderUser;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ArchivedOrderUserRepository extends JpaRepository<ArchivedOrderUser, Long> {
+
+    @Query("select u.monthStart from ArchivedOrderUser u where u.userEmail = :email order by u.monthStart desc")
+    List<LocalDate> findMonthsByUserEmail(@Param("email") String email);
+}
@@ -1,9 +1,56 @@
 package com.icecream.order.repository;
 
+import com.icecream.order.dto.OrderSummary;
 import com.icecream.order.model.Order;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+/**
+ * History queries use keyset pagination on (createdAt, id) descending, which the
+ * (userEmail, createdAt, id) index serves directly however deep the page is.
+ */
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByUserEmail(String userEmail);
+
+    @EntityGraph(attributePaths = "items")
+    List<Order> findByUserEmailOrderByCreatedAtDescIdDesc(String userEmail);
+
+    /** Row-locks the order so concurrent status changes are checked one after another. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Order o where o.id = :id")
+    Optional<Order> findForUpdateById(@Param("id") Long id);
+
+    @Query("select o.id from Order o where o.userEmail = :email order by o.createdAt desc, o.id desc")
+    List<Long> findHistoryIds(@Param("email") String email, Limit limit);
+
+    @Query("select o.id from Order o where o.userEmail = :email"
+            + " and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))"
+            + " order by o.createdAt desc, o.id desc")
+    List<Long> findHistoryIdsAfter(@Param("email") String email, @Param("createdAt") LocalDateTime createdAt,
+                                   @Param("id") long id, Limit limit);
+
+    /** Loads the given orders and all their items in one query. */
+    @Query("select o from Order o left join fetch o.items where o.id in :ids"
+            + " order by o.createdAt desc, o.id desc")
+    List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.icecream.order.dto.OrderSummary(o.id, o.totalAmount, o.status, o.createdAt, size(o.items))"
+            + " from Order o where o.userEmail = :email order by o.createdAt desc, o.id desc")
+    List<OrderSummary> findSummaries(@Param("email") String email, Limit limit);
+
+    @Query("select new com.icecream.order.dto.OrderSummary(o.id, o.totalAmount, o.status, o.createdAt, size(o.items))"
+            + " from Order o where o.userEmail = :email"
+            + " and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))"
+            + " order by o.createdAt desc, o.id desc")
+    List<OrderSummary> findSummariesAfter(@Param("email") String email, @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") long id, Limit limit);
 }
@@ -0,0 +1,28 @@
+package com.icecream.order.repository;
+
+import com.icecream.order.model.OutboxEvent;
+import com.icecream.order.model.OutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Locks a batch of due events that no dispatcher has claimed, or whose claim has
+     * lapsed. SKIP LOCKED lets several dispatchers (or service instances) claim
+     * concurrently without picking the same rows.
+     */
+    @Query(value = "SELECT * FROM order_schema.outbox_events WHERE status = 'PENDING' AND next_attempt_at <= :now "
+            + "AND (claimed_until IS NULL OR claimed_until <= :now) "
+            + "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockDueEvents(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    long countByStatus(OutboxStatus status);
+
+    @Query("select min(e.createdAt) from OutboxEvent e where e.status = com.icecream.order.model.OutboxStatus.PENDING")
+    LocalDateTime findOldestPendingCreatedAt();
+}
@@ -0,0 +1,14 @@
+package com.icecream.order.repository;
+
+import com.icecream.order.model.SalesGranularity;
+import com.icecream.order.model.SalesSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SalesSummaryRepository extends JpaRepository<SalesSummary, Long> {
+
+    List<SalesSummary> findByGranularityAndBucketStartGreaterThanEqual(SalesGranularity granularity,
+                                                                       LocalDateTime from);
+}
@@ -0,0 +1,7 @@
+package com.icecream.order.repository;
+
+import com.icecream.order.model.SalesWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SalesWatermarkRepository extends JpaRepository<SalesWatermark, Long> {
+}
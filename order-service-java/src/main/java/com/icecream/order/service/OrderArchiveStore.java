@@ -0,0 +1,279 @@
+package com.icecream.order.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icecream.order.dto.OrderCursor;
+import com.icecream.order.model.ArchivedOrderMonth;
+import com.icecream.order.model.Order;
+import com.icecream.order.repository.ArchivedOrderMonthRepository;
+import com.icecream.order.repository.ArchivedOrderUserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archived months of orders: one gzip-compressed NDJSON file per month, each line
+ * an order with its items. The files are only trusted once recorded in
+ * {@code order_archive_months}; {@code order_archive_users} lists the months each
+ * user has orders in, so reading a user's archived orders opens just those files.
+ */
+@Component
+public class OrderArchiveStore {
+
+    static final Comparator<Order> NEWEST_FIRST = Comparator
+            .comparing(Order::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Order::getId)
+            .reversed();
+
+    private static final String INSERT_USER = "INSERT INTO order_schema.order_archive_users"
+            + " (month_start, user_email, order_count) VALUES (?, ?, ?)";
+
+    private final ArchivedOrderMonthRepository monthRepository;
+    private final ArchivedOrderUserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private volatile boolean hasArchives;
+
+    public OrderArchiveStore(
+            ArchivedOrderMonthRepository monthRepository,
+            ArchivedOrderUserRepository userRepository,
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            @Value("${application.orders.partitioning.archive.directory:data/order-archive}") Path directory) {
+        this.monthRepository = monthRepository;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(directory);
+        hasArchives = monthRepository.count() > 0;
+    }
+
+    /** Whether any month has been archived; lets the read path skip the archive entirely until then. */
+    public boolean hasArchives() {
+        return hasArchives;
+    }
+
+    /**
+     * Starts writing the archive file of a month. Nothing becomes visible to readers
+     * until {@link MonthWriter#publish()}.
+     */
+    public MonthWriter open(YearMonth month) throws IOException {
+        return new MonthWriter(month);
+    }
+
+    /** All archived orders of the user, newest first. */
+    public List<Order> findByUser(String email) {
+        return findByUser(email, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Up to {@code limit} archived orders of the user older than the cursor (all of
+     * them if it is null), newest first. Months are read newest first and reading
+     * stops once the limit is reached.
+     */
+    public List<Order> findByUser(String email, OrderCursor before, int limit) {
+        if (!hasArchives) {
+            return List.of();
+        }
+        List<Order> found = new ArrayList<>();
+        String needle;
+        try {
+            needle = objectMapper.writeValueAsString(email);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        for (LocalDate monthStart : userRepository.findMonthsByUserEmail(email)) {
+            if (found.size() >= limit) {
+                break;
+            }
+            if (before != null && !monthStart.atStartOfDay().isBefore(before.createdAt())) {
+                continue;  // the whole month is at or after the cursor
+            }
+            List<Order> month = readMonth(YearMonth.from(monthStart), needle, email, before);
+            month.sort(NEWEST_FIRST);
+            found.addAll(month.subList(0, Math.min(month.size(), limit - found.size())));
+        }
+        return found;
+    }
+
+    /**
+     * Archived months with any day in {@code [from, to)} (either bound may be null),
+     * oldest first.
+     */
+    public List<YearMonth> monthsBetween(LocalDateTime from, LocalDateTime to) {
+        if (!hasArchives) {
+            return List.of();
+        }
+        return monthRepository.findAllByOrderByMonthStartAsc().stream()
+                .map(archived -> YearMonth.from(archived.getMonthStart()))
+                .filter(month -> to == null || month.atDay(1).atStartOfDay().isBefore(to))
+                .filter(month -> from == null || month.plusMonths(1).atDay(1).atStartOfDay().isAfter(from))
+                .toList();
+    }
+
+    /**
+     * Passes every order of an archived month to {@code handler}, in file order,
+     * reading one line at a time.
+     *
+     * @throws IOException if the file is missing or unreadable, or the handler fails
+     */
+    public void forEachOrder(YearMonth month, OrderHandler handler) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(directory.resolve(fileName(month))), 1 << 16),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    handler.handle(objectMapper.readValue(line, Order.class));
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface OrderHandler {
+        void handle(Order order) throws IOException;
+    }
+
+    private List<Order> readMonth(YearMonth month, String needle, String email, OrderCursor before) {
+        Path file = directory.resolve(fileName(month));
+        List<Order> orders = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), 1 << 16), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Cheap substring test first; only lines mentioning the user are parsed
+                if (!line.contains(needle)) {
+                    continue;
+                }
+                Order order = objectMapper.readValue(line, Order.class);
+                if (email.equals(order.getUserEmail()) && isBefore(order, before)) {
+                    orders.add(order);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            System.err.println("Order archive file missing for " + month + ": " + file);
+        } catch (IOException e) {
+            System.err.println("Failed to read order archive " + file + ": " + e.getMessage());
+        }
+        return orders;
+    }
+
+    private static boolean isBefore(Order order, OrderCursor cursor) {
+        if (cursor == null) {
+            return true;
+        }
+        int byTime = order.getCreatedAt().compareTo(cursor.createdAt());
+        return byTime < 0 || (byTime == 0 && order.getId() < cursor.id());
+    }
+
+    static String fileName(YearMonth month) {
+        return "orders-" + month + ".ndjson.gz";
+    }
+
+    /**
+     * Writes one month to a temporary file. {@link #publish()} moves it into place and
+     * records it; it should run in the transaction that removes the month from the
+     * database, so the orders are in exactly one of the two once it commits.
+     */
+    public class MonthWriter implements Closeable {
+        private final YearMonth month;
+        private final Path target;
+        private final Path temp;
+        private final FileOutputStream file;
+        private final GZIPOutputStream gzip;
+        private final BufferedWriter writer;
+        private final Map<String, Integer> ordersByUser = new HashMap<>();
+        private long orderCount;
+        private long itemCount;
+        private Long minOrderId;
+        private Long maxOrderId;
+        private boolean published;
+
+        private MonthWriter(YearMonth month) throws IOException {
+            this.month = month;
+            this.target = directory.resolve(fileName(month));
+            this.temp = directory.resolve(fileName(month) + ".tmp");
+            this.file = new FileOutputStream(temp.toFile());
+            this.gzip = new GZIPOutputStream(file, 1 << 16);
+            this.writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+        }
+
+        public void append(Order order) throws IOException {
+            writer.write(objectMapper.writeValueAsString(order));
+            writer.newLine();
+            orderCount++;
+            itemCount += order.getItems() == null ? 0 : order.getItems().size();
+            minOrderId = minOrderId == null ? order.getId() : Math.min(minOrderId, order.getId());
+            maxOrderId = maxOrderId == null ? order.getId() : Math.max(maxOrderId, order.getId());
+            ordersByUser.merge(order.getUserEmail(), 1, Integer::sum);
+        }
+
+        public ArchivedOrderMonth publish() throws IOException {
+            writer.flush();
+            gzip.finish();
+            file.getChannel().force(true);
+            writer.close();
+            // Replaces a file left by an earlier attempt whose transaction didn't commit
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            published = true;
+
+            ArchivedOrderMonth archived = monthRepository.save(ArchivedOrderMonth.builder()
+                    .monthStart(month.atDay(1))
+                    .fileName(target.getFileName().toString())
+                    .orderCount(orderCount)
+                    .itemCount(itemCount)
+                    .minOrderId(minOrderId)
+                    .maxOrderId(maxOrderId)
+                    .archivedAt(LocalDateTime.now())
+                    .build());
+            Date monthStart = Date.valueOf(month.atDay(1));
+            jdbcTemplate.batchUpdate(INSERT_USER, ordersByUser.entrySet().stream()
+                    .map(user -> new Object[] { monthStart, user.getKey(), user.getValue() })
+                    .toList());
+            hasArchives = true;
+            return archived;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!published) {
+                try {
+                    writer.close();
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.icecream.order.service;
+
+import com.icecream.order.dto.OrderStatusEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes order status changes to each user's open event streams.
+ * <p>
+ * Streams are {@link SseEmitter}s, which run on the servlet container's async
+ * support: an idle subscriber holds a connection but no request thread. Recent
+ * events are kept in a fixed-size ring buffer, so a client that reconnects with
+ * {@code Last-Event-ID} is sent what it missed. If the events it missed have left
+ * the buffer, or the id is from before a restart, it is sent a {@code resync}
+ * event and should reload its order history instead.
+ * <p>
+ * Publishing and subscribing for the same user are serialized on a lock stripe, so
+ * each stream sees that user's events once and in id order, with no gap between
+ * the replay and live delivery.
+ */
+@Component
+public class OrderEventBroadcaster {
+
+    private static final String STATUS_EVENT = "status";
+    private static final String RESYNC_EVENT = "resync";
+    private static final int STRIPES = 64;
+
+    // Event ids are "<boot>-<sequence>", so ids from an earlier run are recognised
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantLock bufferLock = new ReentrantLock();
+    private final BufferedEvent[] buffer;
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final int maxSubscribers;
+    private final long emitterTimeoutMillis;
+    private long sequence;
+
+    public OrderEventBroadcaster(
+            MeterRegistry meterRegistry,
+            @Value("${application.orders.events.buffer-size:1024}") int bufferSize,
+            @Value("${application.orders.events.max-subscribers:10000}") int maxSubscribers,
+            @Value("${application.orders.events.timeout:PT30M}") Duration emitterTimeout) {
+        this.buffer = new BufferedEvent[bufferSize];
+        this.maxSubscribers = maxSubscribers;
+        this.emitterTimeoutMillis = emitterTimeout.toMillis();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        Gauge.builder("order.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open order status event streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream for the user, first replaying events after {@code lastEventId}
+     * when the client is resuming. Returns null when the subscriber limit is reached.
+     */
+    public SseEmitter subscribe(String email, String lastEventId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Runnable unsubscribe = () -> remove(email, emitter);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+
+        ReentrantLock lock = stripe(email);
+        lock.lock();
+        try {
+            if (lastEventId != null && !lastEventId.isBlank()) {
+                replay(email, lastEventId, emitter);
+            }
+            subscribers.computeIfAbsent(email, key -> new CopyOnWriteArrayList<>()).add(emitter);
+        } catch (IOException e) {
+            subscriberCount.decrementAndGet();
+            emitter.completeWithError(e);
+        } finally {
+            lock.unlock();
+        }
+        return emitter;
+    }
+
+    public void publish(String email, OrderStatusEvent event) {
+        ReentrantLock lock = stripe(email);
+        lock.lock();
+        try {
+            String id = append(email, event);
+            List<SseEmitter> emitters = subscribers.get(email);
+            if (emitters == null) {
+                return;
+            }
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().id(id).name(STATUS_EVENT).data(event, MediaType.APPLICATION_JSON));
+                } catch (IOException | IllegalStateException e) {
+                    emitter.completeWithError(e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps idle connections open through proxies and detects clients that went away.
+     */
+    @Scheduled(fixedDelayString = "${application.orders.events.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        subscribers.forEach((email, emitters) -> {
+            ReentrantLock lock = stripe(email);
+            lock.lock();
+            try {
+                for (SseEmitter emitter : emitters) {
+                    try {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } catch (IOException | IllegalStateException e) {
+                        emitter.completeWithError(e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    private void replay(String email, String lastEventId, SseEmitter emitter) throws IOException {
+        int separator = lastEventId.lastIndexOf('-');
+        long lastSequence;
+        try {
+            lastSequence = separator > 0 && lastEventId.substring(0, separator).equals(bootId)
+                    ? Long.parseLong(lastEventId.substring(separator + 1))
+                    : -1;
+        } catch (NumberFormatException e) {
+            lastSequence = -1;
+        }
+        List<BufferedEvent> missed = new ArrayList<>();
+        boolean complete;
+        bufferLock.lock();
+        try {
+            long oldestBuffered = Math.max(1, sequence - buffer.length + 1);
+            complete = lastSequence >= 0 && lastSequence + 1 >= oldestBuffered;
+            if (complete) {
+                for (long seq = lastSequence + 1; seq <= sequence; seq++) {
+                    BufferedEvent buffered = buffer[(int) (seq % buffer.length)];
+                    if (buffered.email().equals(email)) {
+                        missed.add(buffered);
+                    }
+                }
+            }
+        } finally {
+            bufferLock.unlock();
+        }
+        if (!complete) {
+            emitter.send(SseEmitter.event().name(RESYNC_EVENT).data("{}", MediaType.APPLICATION_JSON));
+            return;
+        }
+        for (BufferedEvent buffered : missed) {
+            emitter.send(SseEmitter.event().id(bootId + "-" + buffered.sequence()).name(STATUS_EVENT)
+                    .data(buffered.event(), MediaType.APPLICATION_JSON));
+        }
+    }
+
+    private String append(String email, OrderStatusEvent event) {
+        bufferLock.lock();
+        try {
+            long seq = ++sequence;
+            buffer[(int) (seq % buffer.length)] = new BufferedEvent(seq, email, event);
+            return bootId + "-" + seq;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private void remove(String email, SseEmitter emitter) {
+        subscribers.computeIfPresent(email, (key, emitters) -> {
+            if (emitters.remove(emitter)) {
+                subscriberCount.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private ReentrantLock stripe(String email) {
+        return stripes[Math.floorMod(email.hashCode(), STRIPES)];
+    }
+
+    private record BufferedEvent(long sequence, String email, OrderStatusEvent event) {
+    }
+}
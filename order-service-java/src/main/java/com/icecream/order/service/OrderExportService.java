@@ -0,0 +1,373 @@
+package com.icecream.order.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icecream.order.model.Order;
+import com.icecream.order.model.OrderItem;
+import com.icecream.order.model.OrderStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams orders with their items straight from a JDBC cursor to an output
+ * stream. Rows are fetched in fixed-size batches and written as they arrive;
+ * only the order currently being written is tracked, so memory use doesn't grow
+ * with the size of the export. Months already moved to the archive (see
+ * {@link OrderArchiveStore}) are streamed from their files, so an export covering
+ * them is still complete.
+ */
+@Service
+public class OrderExportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final String SELECT = "SELECT o.id, o.user_email, o.status, o.total_amount, o.shipping_address,"
+            + " o.created_at, i.id, i.product_id, i.product_name, i.quantity, i.price"
+            + " FROM order_schema.orders o LEFT JOIN order_schema.order_items i ON i.order_id = o.id";
+    private static final String CSV_HEADER = "order_id,user_email,status,total_amount,shipping_address,created_at,"
+            + "item_id,product_id,product_name,quantity,price";
+
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final OrderArchiveStore archiveStore;
+    private final ObjectMapper objectMapper;
+
+    public OrderExportService(
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            OrderArchiveStore archiveStore,
+            ObjectMapper objectMapper,
+            @Value("${application.orders.export.fetch-size:1000}") int fetchSize) {
+        // PostgreSQL only streams with a fetch size inside a transaction; otherwise it reads the whole result
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.archiveStore = archiveStore;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes the orders created in {@code [from, to)} with one of the given statuses
+     * (any bound or the statuses may be null): first those in archived months, month
+     * by month, then those still in the database, oldest id first. NDJSON has one
+     * order per line with its items nested; CSV has one line per item, orders without
+     * items getting a single line with empty item columns.
+     *
+     * @return the number of orders written
+     * @throws IOException also if an archived month in the range can't be read; the output is then incomplete
+     */
+    public long export(Format format, LocalDateTime from, LocalDateTime to, Collection<OrderStatus> statuses,
+                       OutputStream out) throws IOException {
+        long started = System.currentTimeMillis();
+        StringBuilder sql = new StringBuilder(SELECT).append(" WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND o.created_at >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND o.created_at < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        if (statuses != null && !statuses.isEmpty()) {
+            sql.append(" AND o.status IN (").append(String.join(", ", Collections.nCopies(statuses.size(), "?")))
+                    .append(")");
+            statuses.forEach(status -> args.add(status.name()));
+        }
+        sql.append(" ORDER BY o.id");
+
+        RowWriter writer = format == Format.CSV ? new CsvWriter(out) : new NdjsonWriter(out);
+        List<YearMonth> archivedMonths = archiveStore.monthsBetween(from, to);
+        for (YearMonth month : archivedMonths) {
+            archiveStore.forEachOrder(month, order -> {
+                if (matches(order, from, to, statuses)) {
+                    writer.archived(order);
+                }
+            });
+        }
+        try {
+            readOnlyTransaction.executeWithoutResult(status ->
+                    cursorTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+                        try {
+                            writer.row(rs);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);  // client went away; abandons the query
+                        }
+                    }, args.toArray()));
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        System.out.println("[order-service] Exported " + writer.orders() + " orders as " + format
+                + (archivedMonths.isEmpty() ? "" : " (" + archivedMonths.size() + " archived months)") + " in "
+                + (System.currentTimeMillis() - started) + " ms");
+        return writer.orders();
+    }
+
+    private static boolean matches(Order order, LocalDateTime from, LocalDateTime to,
+                                   Collection<OrderStatus> statuses) {
+        LocalDateTime createdAt = order.getCreatedAt();
+        if (from != null && (createdAt == null || createdAt.isBefore(from))) {
+            return false;
+        }
+        if (to != null && (createdAt == null || !createdAt.isBefore(to))) {
+            return false;
+        }
+        return statuses == null || statuses.isEmpty() || statuses.contains(order.getStatus());
+    }
+
+    private abstract static class RowWriter {
+        private long currentOrderId = -1;
+        private boolean open;
+        private long orders;
+
+        void row(ResultSet rs) throws SQLException, IOException {
+            long orderId = rs.getLong(1);
+            if (orderId != currentOrderId) {
+                if (open) {
+                    endOrder();
+                }
+                currentOrderId = orderId;
+                open = true;
+                orders++;
+                startOrder(rs);
+            }
+            item(rs);
+        }
+
+        /** Writes a whole order read from the archive. */
+        void archived(Order order) throws IOException {
+            if (open) {
+                endOrder();
+                open = false;
+            }
+            currentOrderId = -1;
+            orders++;
+            writeOrder(order);
+        }
+
+        void finish() throws IOException {
+            if (open) {
+                endOrder();
+            }
+            flush();
+        }
+
+        long orders() {
+            return orders;
+        }
+
+        abstract void startOrder(ResultSet rs) throws SQLException, IOException;
+
+        /** Called for every row; the item columns are null for an order without items. */
+        abstract void item(ResultSet rs) throws SQLException, IOException;
+
+        abstract void endOrder() throws IOException;
+
+        abstract void writeOrder(Order order) throws IOException;
+
+        abstract void flush() throws IOException;
+    }
+
+    private class NdjsonWriter extends RowWriter {
+        private final OutputStream out;
+        private final JsonGenerator json;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.out = out;
+            this.json = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.json.setRootValueSeparator(null);
+        }
+
+        @Override
+        void startOrder(ResultSet rs) throws SQLException, IOException {
+            json.writeStartObject();
+            json.writeNumberField("id", rs.getLong(1));
+            json.writeStringField("userEmail", rs.getString(2));
+            json.writeStringField("status", rs.getString(3));
+            writeNumber("totalAmount", rs.getObject(4, Double.class));
+            json.writeStringField("shippingAddress", rs.getString(5));
+            Timestamp createdAt = rs.getTimestamp(6);
+            json.writeStringField("createdAt", createdAt == null ? null : createdAt.toLocalDateTime().toString());
+            json.writeArrayFieldStart("items");
+        }
+
+        @Override
+        void item(ResultSet rs) throws SQLException, IOException {
+            long itemId = rs.getLong(7);
+            if (rs.wasNull()) {
+                return;
+            }
+            json.writeStartObject();
+            json.writeNumberField("id", itemId);
+            json.writeStringField("productId", rs.getString(8));
+            json.writeStringField("productName", rs.getString(9));
+            Integer quantity = rs.getObject(10, Integer.class);
+            if (quantity == null) {
+                json.writeNullField("quantity");
+            } else {
+                json.writeNumberField("quantity", quantity);
+            }
+            writeNumber("price", rs.getObject(11, Double.class));
+            json.writeEndObject();
+        }
+
+        @Override
+        void endOrder() throws IOException {
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        // Same fields and order as a database row, whatever the archive file holds besides
+        @Override
+        void writeOrder(Order order) throws IOException {
+            json.writeStartObject();
+            json.writeNumberField("id", order.getId());
+            json.writeStringField("userEmail", order.getUserEmail());
+            json.writeStringField("status", order.getStatus() == null ? null : order.getStatus().name());
+            writeNumber("totalAmount", order.getTotalAmount());
+            json.writeStringField("shippingAddress", order.getShippingAddress());
+            json.writeStringField("createdAt", order.getCreatedAt() == null ? null : order.getCreatedAt().toString());
+            json.writeArrayFieldStart("items");
+            for (OrderItem item : order.getItems() == null ? List.<OrderItem>of() : order.getItems()) {
+                json.writeStartObject();
+                json.writeNumberField("id", item.getId());
+                json.writeStringField("productId", item.getProductId());
+                json.writeStringField("productName", item.getProductName());
+                if (item.getQuantity() == null) {
+                    json.writeNullField("quantity");
+                } else {
+                    json.writeNumberField("quantity", item.getQuantity());
+                }
+                writeNumber("price", item.getPrice());
+                json.writeEndObject();
+            }
+            endOrder();
+        }
+
+        @Override
+        void flush() throws IOException {
+            json.flush();
+            out.flush();
+        }
+
+        private void writeNumber(String field, Double value) throws IOException {
+            if (value == null) {
+                json.writeNullField(field);
+            } else {
+                json.writeNumberField(field, value);
+            }
+        }
+    }
+
+    private static class CsvWriter extends RowWriter {
+        private final Writer out;
+        private final String[] order = new String[6];
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            this.out.write(CSV_HEADER);
+            this.out.write("\r\n");
+        }
+
+        @Override
+        void startOrder(ResultSet rs) throws SQLException {
+            for (int column = 0; column < order.length; column++) {
+                order[column] = column == 5 ? timestamp(rs.getTimestamp(6)) : rs.getString(column + 1);
+            }
+        }
+
+        @Override
+        void item(ResultSet rs) throws SQLException, IOException {
+            line(rs.getString(7), rs.getString(8), rs.getString(9), rs.getString(10), rs.getString(11));
+        }
+
+        @Override
+        void endOrder() {
+            // one line per item, nothing to close
+        }
+
+        @Override
+        void writeOrder(Order archived) throws IOException {
+            order[0] = string(archived.getId());
+            order[1] = archived.getUserEmail();
+            order[2] = archived.getStatus() == null ? null : archived.getStatus().name();
+            order[3] = string(archived.getTotalAmount());
+            order[4] = archived.getShippingAddress();
+            order[5] = archived.getCreatedAt() == null ? null : archived.getCreatedAt().toString();
+            if (archived.getItems() == null || archived.getItems().isEmpty()) {
+                line(null, null, null, null, null);
+                return;
+            }
+            for (OrderItem item : archived.getItems()) {
+                line(string(item.getId()), item.getProductId(), item.getProductName(), string(item.getQuantity()),
+                        string(item.getPrice()));
+            }
+        }
+
+        private void line(String... item) throws IOException {
+            for (String value : order) {
+                field(value);
+                out.write(',');
+            }
+            for (int column = 0; column < item.length; column++) {
+                field(item[column]);
+                out.write(column < item.length - 1 ? ',' : '\r');
+            }
+            out.write('\n');
+        }
+
+        @Override
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        // RFC 4180: quote fields containing a separator, quote or line break, doubling inner quotes
+        private void field(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        private static String string(Object value) {
+            return value == null ? null : value.toString();
+        }
+
+        private static String timestamp(Timestamp value) {
+            return value == null ? null : value.toLocalDateTime().toString();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.icecream.order.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.icecream.order.model.Order;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of each user's order history. Entries are weighed by the number of
+ * orders and items they hold, so a few heavy customers cannot crowd out memory,
+ * and expire after a fixed time as a backstop.
+ * <p>
+ * Writers invalidate after their transaction commits. Caffeine makes an
+ * invalidation wait for any load of the same key already in flight and then drops
+ * its result, so a reload can never reinstate history read before the commit.
+ * Hit, miss and eviction statistics are published as {@code cache.*} meters.
+ */
+@Component
+public class OrderHistoryCache {
+
+    private final boolean enabled;
+    private final Cache<String, List<Order>> cache;
+
+    public OrderHistoryCache(
+            MeterRegistry meterRegistry,
+            @Value("${application.orders.history.cache.enabled:true}") boolean enabled,
+            @Value("${application.orders.history.cache.max-weight:200000}") long maxWeight,
+            @Value("${application.orders.history.cache.ttl:PT5M}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String email, List<Order> orders) -> weigh(orders))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "orderHistory");
+    }
+
+    public List<Order> get(String email, Function<String, List<Order>> loader) {
+        if (!enabled) {
+            return loader.apply(email);
+        }
+        return cache.get(email, key -> List.copyOf(loader.apply(key)));
+    }
+
+    public void invalidate(String email) {
+        cache.invalidate(email);
+    }
+
+    private static int weigh(List<Order> orders) {
+        int weight = 1;
+        for (Order order : orders) {
+            weight += 1 + (order.getItems() == null ? 0 : order.getItems().size());
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,371 @@
+package com.icecream.order.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icecream.order.client.InsufficientStockException;
+import com.icecream.order.client.InventoryClient;
+import com.icecream.order.dto.OrderIngestFailure;
+import com.icecream.order.dto.OrderIngestResult;
+import com.icecream.order.dto.OrderStatusEvent;
+import com.icecream.order.dto.StockAdjustment;
+import com.icecream.order.model.Order;
+import com.icecream.order.model.OrderItem;
+import com.icecream.order.model.OrderStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk order ingestion for partner channels. Orders are read as a stream and written
+ * in chunks, each chunk in one transaction: ids for all its orders and items are
+ * drawn from the id sequences in a single query each, the rows go in as JDBC
+ * batches, and the chunk's side effects are one aggregated inventory adjustment and
+ * one notification per customer.
+ * <p>
+ * The stock adjustment is made before the chunk commits, under a reference of its
+ * own, so a product that is short refuses the chunk instead of a dead-lettered
+ * outbox event after the orders were reported as inserted. As when placing an
+ * order, the adjustment is deferred to the outbox only if inventory-service could
+ * not be asked.
+ * <p>
+ * If a chunk fails as a whole, its orders are retried one by one so that only the
+ * offending rows (including those short of stock) are reported as failed.
+ */
+@Service
+public class OrderIngestService {
+
+    private static final String ALLOCATE_IDS =
+            "SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)";
+    private static final String INSERT_ORDER = "INSERT INTO order_schema.orders"
+            + " (id, user_email, total_amount, status, shipping_address, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ITEM = "INSERT INTO order_schema.order_items"
+            + " (id, order_id, product_id, product_name, quantity, price, order_created_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxService outboxService;
+    private final InventoryClient inventoryClient;
+    private final OrderHistoryCache historyCache;
+    private final SalesAggregator salesAggregator;
+    private final OrderEventBroadcaster eventBroadcaster;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxReportedFailures;
+
+    public OrderIngestService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            OutboxService outboxService,
+            InventoryClient inventoryClient,
+            OrderHistoryCache historyCache,
+            SalesAggregator salesAggregator,
+            OrderEventBroadcaster eventBroadcaster,
+            ObjectMapper objectMapper,
+            @Value("${application.orders.ingest.chunk-size:500}") int chunkSize,
+            @Value("${application.orders.ingest.max-reported-failures:100}") int maxReportedFailures) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.outboxService = outboxService;
+        this.inventoryClient = inventoryClient;
+        this.historyCache = historyCache;
+        this.salesAggregator = salesAggregator;
+        this.eventBroadcaster = eventBroadcaster;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxReportedFailures = maxReportedFailures;
+    }
+
+    /**
+     * Ingests newline-delimited JSON, one order per line.
+     */
+    public OrderIngestResult ingestNdjson(InputStream input) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        return ingest(new Iterator<>() {
+            private long row;
+            private String next = advance();
+
+            private String advance() {
+                try {
+                    String line;
+                    do {
+                        line = reader.readLine();
+                    } while (line != null && line.isBlank());
+                    return line;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public IngestRow next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                String line = next;
+                next = advance();
+                row++;
+                try {
+                    return toRow(row, objectMapper.readTree(line));
+                } catch (JsonProcessingException e) {
+                    return IngestRow.failed(row, "Malformed JSON: " + e.getOriginalMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Ingests a JSON array of orders, read element by element so the array is never
+     * held in memory. A syntax error ends the stream at that element.
+     */
+    public OrderIngestResult ingestJsonArray(InputStream input) throws IOException {
+        JsonParser parser = objectMapper.createParser(input);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Expected a JSON array of orders");
+        }
+        return ingest(new Iterator<>() {
+            private long row;
+            private boolean positioned;
+            private boolean done;
+            private String syntaxError;
+
+            @Override
+            public boolean hasNext() {
+                if (!done && !positioned) {
+                    try {
+                        JsonToken token = parser.nextToken();
+                        done = token == null || token == JsonToken.END_ARRAY;
+                    } catch (IOException e) {
+                        syntaxError = jsonMessage(e);  // reported as one last failed row
+                    }
+                    positioned = true;
+                }
+                return !done;
+            }
+
+            @Override
+            public IngestRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                positioned = false;
+                row++;
+                if (syntaxError != null) {
+                    done = true;
+                    return IngestRow.failed(row, "Malformed JSON, rest of the stream skipped: " + syntaxError);
+                }
+                try {
+                    return toRow(row, parser.readValueAsTree());
+                } catch (IOException e) {
+                    done = true;
+                    return IngestRow.failed(row, "Malformed JSON, rest of the stream skipped: " + jsonMessage(e));
+                }
+            }
+        });
+    }
+
+    private OrderIngestResult ingest(Iterator<IngestRow> rows) {
+        long started = System.currentTimeMillis();
+        OrderIngestResult result = new OrderIngestResult();
+        List<IngestRow> chunk = new ArrayList<>(chunkSize);
+        while (rows.hasNext()) {
+            IngestRow row = rows.next();
+            result.setRead(result.getRead() + 1);
+            if (row.error() != null) {
+                fail(result, row.row(), row.error());
+                continue;
+            }
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                ingestChunk(chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            ingestChunk(chunk, result);
+        }
+        result.setElapsedMillis(System.currentTimeMillis() - started);
+        return result;
+    }
+
+    private void ingestChunk(List<IngestRow> chunk, OrderIngestResult result) {
+        try {
+            persist(chunk);
+            result.setInserted(result.getInserted() + chunk.size());
+        } catch (RuntimeException chunkFailure) {
+            if (chunk.size() == 1) {
+                fail(result, chunk.get(0).row(), rootMessage(chunkFailure));
+                return;
+            }
+            for (IngestRow row : chunk) {
+                try {
+                    persist(List.of(row));
+                    result.setInserted(result.getInserted() + 1);
+                } catch (RuntimeException rowFailure) {
+                    fail(result, row.row(), rootMessage(rowFailure));
+                }
+            }
+        }
+    }
+
+    private void persist(List<IngestRow> rows) {
+        int itemCount = rows.stream().mapToInt(row -> row.order().getItems().size()).sum();
+        Set<String> customers = new LinkedHashSet<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Iterator<Long> orderIds = allocateIds("order_schema.orders", rows.size()).iterator();
+            Iterator<Long> itemIds = allocateIds("order_schema.order_items", itemCount).iterator();
+            List<Object[]> orderRows = new ArrayList<>(rows.size());
+            List<Object[]> itemRows = new ArrayList<>(itemCount);
+            Map<String, Integer> deltas = new TreeMap<>();
+            Map<String, List<Order>> ordersByCustomer = new LinkedHashMap<>();
+            for (IngestRow row : rows) {
+                Order order = row.order();
+                order.setId(orderIds.next());
+                Timestamp createdAt = Timestamp.valueOf(order.getCreatedAt());
+                orderRows.add(new Object[] { order.getId(), order.getUserEmail(), order.getTotalAmount(),
+                        order.getStatus().name(), order.getShippingAddress(), createdAt });
+                for (OrderItem item : order.getItems()) {
+                    itemRows.add(new Object[] { itemIds.next(), order.getId(), item.getProductId(),
+                            item.getProductName(), item.getQuantity(), item.getPrice(), createdAt });
+                    deltas.merge(item.getProductId(), -item.getQuantity(), Integer::sum);
+                }
+                ordersByCustomer.computeIfAbsent(order.getUserEmail(), email -> new ArrayList<>()).add(order);
+            }
+            jdbcTemplate.batchUpdate(INSERT_ORDER, orderRows);
+            jdbcTemplate.batchUpdate(INSERT_ITEM, itemRows);
+            ordersByCustomer.forEach((email, orders) -> outboxService.enqueueNotification(confirmation(email, orders)));
+
+            // Last, so the rows are in before stock moves; a refusal rolls the chunk back
+            String reference = "ingest-" + UUID.randomUUID();
+            List<StockAdjustment> adjustments = deltas.entrySet().stream()
+                    .map(delta -> new StockAdjustment(delta.getKey(), delta.getValue(), reference))
+                    .toList();
+            try {
+                inventoryClient.adjustStock(adjustments);
+            } catch (InsufficientStockException e) {
+                throw e;
+            } catch (Exception e) {
+                System.err.println("Failed to adjust inventory for ingested orders, deferring to outbox: " + e.getMessage());
+                outboxService.enqueueInventoryAdjustment(adjustments);
+            }
+            customers.addAll(ordersByCustomer.keySet());
+        });
+        customers.forEach(historyCache::invalidate);
+        for (IngestRow row : rows) {
+            Order order = row.order();
+            salesAggregator.record(order);
+            eventBroadcaster.publish(order.getUserEmail(), OrderStatusEvent.builder()
+                    .orderId(order.getId())
+                    .status(order.getStatus())
+                    .occurredAt(order.getCreatedAt())
+                    .build());
+        }
+    }
+
+    private List<Long> allocateIds(String table, int count) {
+        if (count == 0) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(ALLOCATE_IDS, Long.class, table, count);
+    }
+
+    private IngestRow toRow(long row, JsonNode node) {
+        final Order order;
+        try {
+            order = objectMapper.treeToValue(node, Order.class);
+        } catch (JsonProcessingException e) {
+            return IngestRow.failed(row, "Invalid order: " + e.getOriginalMessage());
+        }
+        if (order.getUserEmail() == null || order.getUserEmail().isBlank()) {
+            return IngestRow.failed(row, "userEmail is required");
+        }
+        if (order.getItems() == null || order.getItems().isEmpty()) {
+            return IngestRow.failed(row, "Order has no items");
+        }
+        double total = 0;
+        for (int i = 0; i < order.getItems().size(); i++) {
+            OrderItem item = order.getItems().get(i);
+            if (item == null || item.getProductId() == null || item.getProductId().isBlank()
+                    || item.getQuantity() == null || item.getQuantity() <= 0) {
+                return IngestRow.failed(row, "Item " + (i + 1) + " needs a productId and a positive quantity");
+            }
+            total += item.getQuantity() * (item.getPrice() == null ? 0 : item.getPrice());
+        }
+        if (order.getTotalAmount() == null) {
+            order.setTotalAmount(total);
+        }
+        if (order.getStatus() == null) {
+            order.setStatus(OrderStatus.PLACED);
+        }
+        if (order.getCreatedAt() == null) {
+            order.setCreatedAt(LocalDateTime.now());
+        }
+        return new IngestRow(row, order, null);
+    }
+
+    private static Map<String, String> confirmation(String email, List<Order> orders) {
+        String ids = orders.stream().map(order -> "#" + order.getId()).collect(Collectors.joining(", "));
+        double total = orders.stream().mapToDouble(Order::getTotalAmount).sum();
+        Map<String, String> notification = new HashMap<>();
+        notification.put("recipient", email);
+        notification.put("subject", orders.size() == 1
+                ? "Order Confirmation " + ids
+                : "Order Confirmation (" + orders.size() + " orders)");
+        notification.put("body", "Thank you for your order" + (orders.size() == 1 ? "" : "s") + " " + ids
+                + ". Total: " + total + " USD. Your scoops are coming!");
+        return notification;
+    }
+
+    private void fail(OrderIngestResult result, long row, String reason) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getFailures().size() < maxReportedFailures) {
+            result.getFailures().add(new OrderIngestFailure(row, reason));
+        }
+    }
+
+    private static String jsonMessage(IOException e) {
+        return e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+    }
+
+    private static String rootMessage(Throwable failure) {
+        Throwable root = NestedExceptionUtils.getMostSpecificCause(failure);
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+
+    private record IngestRow(long row, Order order, String error) {
+        static IngestRow failed(long row, String error) {
+            return new IngestRow(row, null, error);
+        }
+    }
+}
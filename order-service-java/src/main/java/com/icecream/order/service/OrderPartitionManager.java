@@ -0,0 +1,348 @@
+package com.icecream.order.service;
+
+import com.icecream.order.model.ArchivedOrderMonth;
+import com.icecream.order.model.Order;
+import com.icecream.order.model.OrderItem;
+import com.icecream.order.model.OrderStatus;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps {@code orders} and {@code order_items} range-partitioned by month of the
+ * order's creation time, when enabled.
+ * <p>
+ * The first start with partitioning enabled converts both tables in one
+ * transaction: the rows are copied into partitioned tables with a partition per
+ * month they span, and the id sequences carry over. Afterwards partitions are
+ * created ahead of time, and months older than the archive age are written to
+ * the {@link OrderArchiveStore} and their partitions dropped. Rows whose month has
+ * no partition (e.g. ingested with an old timestamp) land in a default partition
+ * and stay in the database.
+ * <p>
+ * Queries for recent orders probe one small index per live partition, so their
+ * cost is bounded by the archive age rather than by the table's total history.
+ * Partitioned tables can't have a primary key that leaves out the partition
+ * column, so the keys are {@code (id, created_at)} and {@code (id, order_created_at)},
+ * and items reference their order through both columns. Rows without a creation
+ * time are given the epoch when converting, which keeps them in the default
+ * partition.
+ */
+@Component
+@DependsOn("entityManagerFactory")  // Hibernate creates or updates the tables first
+public class OrderPartitionManager {
+
+    private static final long LOCK_KEY = 0x6f726465725f7061L;
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("'_p'yyyy_MM");
+    private static final Pattern ORDERS_PARTITION = Pattern.compile("orders_p(\\d{4})_(\\d{2})");
+    private static final List<PartitionedTable> TABLES = List.of(
+            new PartitionedTable("order_items", "order_created_at", List.of("idx_order_items_order_id (order_id)")),
+            new PartitionedTable("orders", "created_at", List.of("idx_orders_user_created (user_email, created_at, id)")));
+    private static final Timestamp EPOCH = Timestamp.valueOf("1970-01-01 00:00:00");
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderArchiveStore archiveStore;
+    private final boolean enabled;
+    private final int premakeMonths;
+    private final boolean archiveEnabled;
+    private final Period archiveAfter;
+
+    public OrderPartitionManager(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            OrderArchiveStore archiveStore,
+            @Value("${application.orders.partitioning.enabled:false}") boolean enabled,
+            @Value("${application.orders.partitioning.premake-months:2}") int premakeMonths,
+            @Value("${application.orders.partitioning.archive.enabled:true}") boolean archiveEnabled,
+            @Value("${application.orders.partitioning.archive.after:P12M}") Period archiveAfter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.archiveStore = archiveStore;
+        this.enabled = enabled;
+        this.premakeMonths = premakeMonths;
+        this.archiveEnabled = archiveEnabled;
+        this.archiveAfter = archiveAfter;
+    }
+
+    @PostConstruct
+    void convertIfNeeded() {
+        if (!enabled) {
+            return;
+        }
+        if (isPartitioned()) {
+            addKeysIfMissing();
+            return;
+        }
+        long started = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, LOCK_KEY);
+            if (isPartitioned()) {
+                return;  // another instance converted them while we waited
+            }
+            jdbcTemplate.execute("LOCK TABLE order_schema.orders, order_schema.order_items IN ACCESS EXCLUSIVE MODE");
+            backfillKeyColumns();
+            LocalDateTime oldest = jdbcTemplate.queryForObject(
+                    "SELECT min(created_at) FROM order_schema.orders", LocalDateTime.class);
+            YearMonth from = oldest == null ? YearMonth.now() : YearMonth.from(oldest);
+            YearMonth to = YearMonth.now().plusMonths(premakeMonths);
+            for (PartitionedTable table : TABLES) {
+                convert(table, from, to);
+            }
+            addKeys();
+        });
+        System.out.println("[order-service] Converted orders and order_items to monthly partitions in "
+                + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    private void convert(PartitionedTable table, YearMonth from, YearMonth to) {
+        String name = "order_schema." + table.name();
+        String legacy = table.name() + "_unpartitioned";
+        Long maxId = jdbcTemplate.queryForObject("SELECT coalesce(max(id), 0) FROM " + name, Long.class);
+        // Free the sequence name; the new table gets a plain sequence continuing from the highest id
+        jdbcTemplate.execute("ALTER TABLE " + name + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+        jdbcTemplate.execute("ALTER TABLE " + name + " ALTER COLUMN id DROP DEFAULT");
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS " + name + "_id_seq");
+        jdbcTemplate.execute("ALTER TABLE " + name + " RENAME TO " + legacy);
+        for (String index : table.indexes()) {
+            jdbcTemplate.execute("DROP INDEX IF EXISTS order_schema." + index.substring(0, index.indexOf(' ')));
+        }
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE order_schema." + legacy + " INCLUDING DEFAULTS)"
+                + " PARTITION BY RANGE (" + table.keyColumn() + ")");
+        jdbcTemplate.execute("CREATE SEQUENCE " + name + "_id_seq START WITH " + (maxId + 1)
+                + " OWNED BY " + name + ".id");
+        jdbcTemplate.execute("ALTER TABLE " + name + " ALTER COLUMN id SET DEFAULT nextval('" + name + "_id_seq')");
+        jdbcTemplate.execute("CREATE TABLE " + name + "_default PARTITION OF " + name + " DEFAULT");
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            createPartition(table, month);
+        }
+        for (String index : table.indexes()) {
+            jdbcTemplate.execute("CREATE INDEX " + index.replaceFirst(" ", " ON " + name + " "));
+        }
+        jdbcTemplate.update("INSERT INTO " + name + " SELECT * FROM order_schema." + legacy);
+        jdbcTemplate.execute("DROP TABLE order_schema." + legacy + " CASCADE");
+    }
+
+    // Tables converted before the keys were added get them on the next start
+    private void addKeysIfMissing() {
+        if (hasPrimaryKey()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, LOCK_KEY);
+            if (hasPrimaryKey()) {
+                return;
+            }
+            jdbcTemplate.execute("LOCK TABLE order_schema.orders, order_schema.order_items IN ACCESS EXCLUSIVE MODE");
+            backfillKeyColumns();
+            addKeys();
+        });
+        System.out.println("[order-service] Added primary keys to the partitioned orders and order_items");
+    }
+
+    // The partition columns become part of the keys, so none may be null; an item whose
+    // order is gone keeps its row but no longer points at one
+    private void backfillKeyColumns() {
+        jdbcTemplate.update("UPDATE order_schema.orders SET created_at = ? WHERE created_at IS NULL", EPOCH);
+        jdbcTemplate.update("UPDATE order_schema.order_items i SET order_created_at = o.created_at"
+                + " FROM order_schema.orders o WHERE i.order_id = o.id"
+                + " AND i.order_created_at IS DISTINCT FROM o.created_at");
+        jdbcTemplate.update("UPDATE order_schema.order_items i SET order_id = NULL WHERE order_id IS NOT NULL"
+                + " AND NOT EXISTS (SELECT 1 FROM order_schema.orders o WHERE o.id = i.order_id)");
+        jdbcTemplate.update("UPDATE order_schema.order_items SET order_created_at = ?"
+                + " WHERE order_created_at IS NULL", EPOCH);
+    }
+
+    private void addKeys() {
+        jdbcTemplate.execute("ALTER TABLE order_schema.orders ADD PRIMARY KEY (id, created_at)");
+        jdbcTemplate.execute("ALTER TABLE order_schema.order_items ADD PRIMARY KEY (id, order_created_at)");
+        jdbcTemplate.execute("ALTER TABLE order_schema.order_items ADD CONSTRAINT fk_order_items_order"
+                + " FOREIGN KEY (order_id, order_created_at) REFERENCES order_schema.orders (id, created_at)");
+    }
+
+    /**
+     * Creates the partitions for the coming months and archives months that have
+     * reached the archive age.
+     */
+    @Scheduled(fixedDelayString = "${application.orders.partitioning.maintenance-interval:PT1H}")
+    public void maintain() {
+        if (!enabled || !isPartitioned()) {
+            return;
+        }
+        YearMonth now = YearMonth.now();
+        for (YearMonth month = now; !month.isAfter(now.plusMonths(premakeMonths)); month = month.plusMonths(1)) {
+            YearMonth target = month;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (tryLock()) {
+                        TABLES.forEach(table -> createPartition(table, target));
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Typically rows for that month already sit in the default partition
+                System.err.println("Failed to create order partitions for " + target + ": " + e.getMessage());
+            }
+        }
+        if (!archiveEnabled) {
+            return;
+        }
+        for (YearMonth month : archivableMonths()) {
+            try {
+                archive(month);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to archive orders for " + month + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a month's orders to the archive and drops its partitions, in one
+     * transaction. The partitions are share-locked first so no order of the month
+     * can change between being written out and being dropped.
+     */
+    private void archive(YearMonth month) {
+        long started = System.currentTimeMillis();
+        ArchivedOrderMonth archived = transactionTemplate.execute(status -> {
+            if (!tryLock()) {
+                return null;
+            }
+            String orders = "order_schema.orders" + month.format(SUFFIX);
+            String items = "order_schema.order_items" + month.format(SUFFIX);
+            jdbcTemplate.execute("LOCK TABLE " + orders + ", " + items + " IN SHARE MODE");
+            try (OrderArchiveStore.MonthWriter writer = archiveStore.open(month)) {
+                jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    try (PreparedStatement orderQuery = connection.prepareStatement("SELECT id, user_email,"
+                            + " total_amount, status, shipping_address, created_at FROM " + orders + " ORDER BY id");
+                         PreparedStatement itemQuery = connection.prepareStatement("SELECT id, order_id, product_id,"
+                                 + " product_name, quantity, price FROM " + items + " ORDER BY order_id, id")) {
+                        orderQuery.setFetchSize(FETCH_SIZE);
+                        itemQuery.setFetchSize(FETCH_SIZE);
+                        try (ResultSet orderRows = orderQuery.executeQuery();
+                             ResultSet itemRows = itemQuery.executeQuery()) {
+                            writeOrders(orderRows, itemRows, writer);
+                        }
+                    }
+                    return null;
+                });
+                ArchivedOrderMonth published = writer.publish();
+                // Items first: the orders partition can't be detached while items still reference it
+                for (String partition : List.of(items, orders)) {
+                    String parent = partition.substring(0, partition.lastIndexOf("_p"));
+                    jdbcTemplate.execute("ALTER TABLE " + parent + " DETACH PARTITION " + partition);
+                    jdbcTemplate.execute("DROP TABLE " + partition);
+                }
+                return published;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (archived != null) {
+            System.out.println("[order-service] Archived " + archived.getOrderCount() + " orders from " + month
+                    + " to " + archived.getFileName() + " in " + (System.currentTimeMillis() - started) + " ms");
+        }
+    }
+
+    // Both result sets are ordered by order id, so items are matched to their order in one pass
+    private static void writeOrders(ResultSet orderRows, ResultSet itemRows, OrderArchiveStore.MonthWriter writer)
+            throws SQLException {
+        boolean hasItem = itemRows.next();
+        while (orderRows.next()) {
+            long orderId = orderRows.getLong("id");
+            String status = orderRows.getString("status");
+            Order order = Order.builder()
+                    .id(orderId)
+                    .userEmail(orderRows.getString("user_email"))
+                    .totalAmount(orderRows.getObject("total_amount", Double.class))
+                    .status(status == null ? null : OrderStatus.valueOf(status))
+                    .shippingAddress(orderRows.getString("shipping_address"))
+                    .createdAt(orderRows.getObject("created_at", LocalDateTime.class))
+                    .items(new ArrayList<>())
+                    .build();
+            while (hasItem && itemRows.getLong("order_id") < orderId) {
+                hasItem = itemRows.next();  // item without an order
+            }
+            while (hasItem && itemRows.getLong("order_id") == orderId) {
+                order.getItems().add(OrderItem.builder()
+                        .id(itemRows.getLong("id"))
+                        .productId(itemRows.getString("product_id"))
+                        .productName(itemRows.getString("product_name"))
+                        .quantity(itemRows.getObject("quantity", Integer.class))
+                        .price(itemRows.getObject("price", Double.class))
+                        .build());
+                hasItem = itemRows.next();
+            }
+            try {
+                writer.append(order);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private List<YearMonth> archivableMonths() {
+        LocalDate cutoff = LocalDate.now().minus(archiveAfter);
+        List<YearMonth> months = new ArrayList<>();
+        for (String partition : jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid"
+                + " WHERE i.inhparent = 'order_schema.orders'::regclass", String.class)) {
+            Matcher matcher = ORDERS_PARTITION.matcher(partition);
+            if (matcher.matches()) {
+                YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                if (!month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                    months.add(month);
+                }
+            }
+        }
+        months.sort(null);
+        return months;
+    }
+
+    private void createPartition(PartitionedTable table, YearMonth month) {
+        String name = "order_schema." + table.name();
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + month.format(SUFFIX)
+                + " PARTITION OF " + name + " FOR VALUES FROM ('" + Timestamp.valueOf(month.atDay(1).atStartOfDay())
+                + "') TO ('" + Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()) + "')");
+    }
+
+    private boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_partitioned_table"
+                + " WHERE partrelid = to_regclass('order_schema.orders'))", Boolean.class));
+    }
+
+    private boolean hasPrimaryKey() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_constraint"
+                + " WHERE conrelid = 'order_schema.orders'::regclass AND contype = 'p')", Boolean.class));
+    }
+
+    // Only one instance maintains the partitions at a time; the others skip the round
+    private boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY));
+    }
+
+    private record PartitionedTable(String name, String keyColumn, List<String> indexes) {
+    }
+}
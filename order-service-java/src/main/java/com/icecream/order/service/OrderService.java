@@ -1,58 +1,220 @@
 package com.icecream.order.service;
 
+import com.icecream.order.client.InsufficientStockException;
+import com.icecream.order.client.InventoryClient;
+import com.icecream.order.dto.OrderCursor;
+import com.icecream.order.dto.OrderPage;
+import com.icecream.order.dto.OrderStatusEvent;
+import com.icecream.order.dto.OrderSummary;
+import com.icecream.order.dto.StockAdjustment;
 import com.icecream.order.model.Order;
-import com.icecream.order.model.OrderItem;
+import com.icecream.order.model.OrderStatus;
 import com.icecream.order.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
     private final OrderRepository repository;
-    private final RestTemplate restTemplate;
+    private final InventoryClient inventoryClient;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderHistoryCache historyCache;
+    private final SalesAggregator salesAggregator;
+    private final OrderEventBroadcaster eventBroadcaster;
+    private final OrderArchiveStore archiveStore;
 
+    @Value("${application.orders.history.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${application.orders.history.max-page-size:100}")
+    private int maxPageSize;
+
+    /**
+     * @throws InsufficientStockException if inventory-service has too little stock for the order
+     */
     public Order createOrder(Order order) {
         order.setCreatedAt(LocalDateTime.now());
-        order.setStatus("PLACED");
-
-        // 1. Check/Adjust Inventory (Simple deduction)
-        for (OrderItem item : order.getItems()) {
-            try {
-                String inventoryUrl = "http://inventory-service:8084/api/inventory/" + item.getProductId()
-                        + "/adjust?adjustment=-" + item.getQuantity();
-                restTemplate.postForObject(inventoryUrl, null, Object.class);
-            } catch (Exception e) {
-                System.err.println(
-                        "Failed to adjust inventory for product " + item.getProductId() + ": " + e.getMessage());
-            }
-        }
+        order.setStatus(OrderStatus.PLACED);
 
-        Order savedOrder = repository.save(order);
-
-        // 2. Notify Notification Service
+        // 1. Check/Adjust Inventory (one batch call for the whole order). If inventory-service is failing,
+        //    saturated or out of this request's time, the adjustment is deferred to the outbox instead
+        //    (see DownstreamGuard); notifications always go through the outbox
+        //    The reference is shared by the call and any outbox retry, so inventory-service applies it once
+        //    even if the call did go through before failing here
+        String reference = "order-" + UUID.randomUUID();
+        List<StockAdjustment> adjustments = order.getItems().stream()
+                .map(item -> new StockAdjustment(item.getProductId(), -item.getQuantity(), reference))
+                .toList();
+        boolean inventoryAdjusted;
         try {
-            String notificationUrl = "http://notification-service:8001/api/notifications/send";
+            inventoryClient.adjustStock(adjustments);
+            inventoryAdjusted = true;
+        } catch (InsufficientStockException e) {
+            throw e;  // the order can't be filled; nothing was reserved
+        } catch (Exception e) {
+            System.err.println("Failed to adjust inventory for order items, deferring to outbox: " + e.getMessage());
+            inventoryAdjusted = false;
+        }
+
+        // 2. Persist the order together with its side effects; the outbox dispatcher delivers them
+        final boolean deferInventory = !inventoryAdjusted;
+        Order placed = transactionTemplate.execute(status -> {
+            Order savedOrder = repository.save(order);
+            if (deferInventory) {
+                outboxService.enqueueInventoryAdjustment(adjustments);
+            }
             Map<String, String> notification = new HashMap<>();
             notification.put("recipient", order.getUserEmail());
             notification.put("subject", "Order Confirmation #" + savedOrder.getId());
             notification.put("body",
                     "Thank you for your order. Total: " + order.getTotalAmount() + " USD. Your scoops are coming!");
-            restTemplate.postForObject(notificationUrl, notification, Object.class);
-        } catch (Exception e) {
-            System.err.println("Failed to send notification: " + e.getMessage());
-        }
+            outboxService.enqueueNotification(notification);
+            return savedOrder;
+        });
+        historyCache.invalidate(order.getUserEmail());
+        salesAggregator.record(placed);
+        eventBroadcaster.publish(placed.getUserEmail(), OrderStatusEvent.builder()
+                .orderId(placed.getId())
+                .status(placed.getStatus())
+                .occurredAt(placed.getCreatedAt())
+                .build());
+        return placed;
+    }
 
-        return savedOrder;
+    /**
+     * Moves the order to a new status. Returns null if there is no such order.
+     *
+     * @throws IllegalStateException if the order's current status does not allow the move
+     */
+    public Order updateStatus(Long orderId, OrderStatus newStatus) {
+        OrderStatusEvent[] event = new OrderStatusEvent[1];
+        Order updated = transactionTemplate.execute(status -> repository.findForUpdateById(orderId)
+                .map(order -> {
+                    OrderStatus previous = order.getStatus();
+                    if (previous != null && !previous.canTransitionTo(newStatus)) {
+                        throw new IllegalStateException(
+                                "Order " + orderId + " cannot move from " + previous + " to " + newStatus);
+                    }
+                    order.setStatus(newStatus);
+                    event[0] = new OrderStatusEvent(orderId, newStatus, previous, LocalDateTime.now());
+                    return repository.save(order);
+                })
+                .orElse(null));
+        if (updated != null) {
+            historyCache.invalidate(updated.getUserEmail());
+            eventBroadcaster.publish(updated.getUserEmail(), event[0]);
+        }
+        return updated;
     }
 
     public List<Order> getOrdersByUser(String email) {
-        return repository.findByUserEmail(email);
+        return historyCache.get(email, this::loadOrdersByUser);
+    }
+
+    private List<Order> loadOrdersByUser(String email) {
+        List<Order> live = repository.findByUserEmailOrderByCreatedAtDescIdDesc(email);
+        if (!archiveStore.hasArchives()) {
+            return live;
+        }
+        return newestFirst(live, archiveStore.findByUser(email), OrderArchiveStore.NEWEST_FIRST, Integer.MAX_VALUE);
+    }
+
+    /**
+     * A page of the user's orders with their items, newest first. Ids are paged with
+     * the keyset query and the orders then loaded with their items in one fetch join,
+     * so a page costs two queries regardless of its size or depth. Once the user's
+     * orders in the database are exhausted, paging continues into archived months.
+     */
+    public OrderPage<Order> getOrderHistory(String email, String cursor, Integer pageSize) {
+        int limit = pageSize(pageSize);
+        OrderCursor after = cursor == null || cursor.isBlank() ? null : OrderCursor.decode(cursor);
+        List<Long> ids = after == null
+                ? repository.findHistoryIds(email, Limit.of(limit + 1))
+                : repository.findHistoryIdsAfter(email, after.createdAt(), after.id(), Limit.of(limit + 1));
+        boolean hasMore = ids.size() > limit;
+        List<Long> pageIds = hasMore ? ids.subList(0, limit) : ids;
+        List<Order> orders = pageIds.isEmpty() ? List.of() : repository.findWithItemsByIdIn(pageIds);
+        if (!hasMore && archiveStore.hasArchives()) {
+            // The live partitions ran out before the page filled up; continue into the archive
+            orders = newestFirst(orders, archiveStore.findByUser(email, after, limit + 1),
+                    OrderArchiveStore.NEWEST_FIRST, limit + 1);
+            hasMore = orders.size() > limit;
+            orders = hasMore ? orders.subList(0, limit) : orders;
+        }
+        Order last = orders.isEmpty() ? null : orders.get(orders.size() - 1);
+        return OrderPage.<Order>builder()
+                .orders(orders)
+                .nextCursor(hasMore ? new OrderCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .build();
+    }
+
+    /**
+     * A page of the user's orders without items, newest first, in a single query.
+     */
+    public OrderPage<OrderSummary> getOrderSummaries(String email, String cursor, Integer pageSize) {
+        int limit = pageSize(pageSize);
+        OrderCursor after = cursor == null || cursor.isBlank() ? null : OrderCursor.decode(cursor);
+        List<OrderSummary> summaries = after == null
+                ? repository.findSummaries(email, Limit.of(limit + 1))
+                : repository.findSummariesAfter(email, after.createdAt(), after.id(), Limit.of(limit + 1));
+        if (summaries.size() <= limit && archiveStore.hasArchives()) {
+            List<OrderSummary> archived = archiveStore.findByUser(email, after, limit + 1).stream()
+                    .map(OrderService::summarize)
+                    .toList();
+            summaries = newestFirst(summaries, archived,
+                    byNewest(OrderSummary::getCreatedAt, OrderSummary::getId), limit + 1);
+        }
+        boolean hasMore = summaries.size() > limit;
+        List<OrderSummary> page = hasMore ? summaries.subList(0, limit) : summaries;
+        OrderSummary last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return OrderPage.<OrderSummary>builder()
+                .orders(page)
+                .nextCursor(hasMore ? new OrderCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .build();
+    }
+
+    // Both lists are newest first; a few live rows (e.g. in the default partition) may be older than archived ones
+    private static <T> List<T> newestFirst(List<T> live, List<T> archived, Comparator<T> order, int limit) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        return Stream.concat(live.stream(), archived.stream()).sorted(order).limit(limit).toList();
+    }
+
+    private static <T> Comparator<T> byNewest(Function<T, LocalDateTime> createdAt, Function<T, Long> id) {
+        return Comparator.comparing(createdAt, Comparator.nullsLast(Comparator.<LocalDateTime>naturalOrder()))
+                .thenComparing(id)
+                .reversed();
+    }
+
+    private static OrderSummary summarize(Order order) {
+        return OrderSummary.builder()
+                .id(order.getId())
+                .totalAmount(order.getTotalAmount())
+                .status(order.getStatus())
+                .createdAt(order.getCreatedAt())
+                .itemCount(order.getItems() == null ? 0 : order.getItems().size())
+                .build();
+    }
+
+    private int pageSize(Integer requested) {
+        if (requested == null || requested <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(requested, maxPageSize);
     }
 }
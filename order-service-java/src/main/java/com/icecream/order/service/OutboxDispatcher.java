@@ -0,0 +1,195 @@
+package com.icecream.order.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icecream.order.client.DownstreamGuard;
+import com.icecream.order.client.InsufficientStockException;
+import com.icecream.order.client.InventoryClient;
+import com.icecream.order.client.NotificationClient;
+import com.icecream.order.dto.StockAdjustment;
+import com.icecream.order.model.OutboxEvent;
+import com.icecream.order.model.OutboxStatus;
+import com.icecream.order.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the outbox in batches. Failed deliveries are retried with exponential
+ * backoff and jitter. After the configured number of attempts an event is moved
+ * to the DEAD state and left for an operator to inspect. Calls refused by the
+ * {@link DownstreamGuard} are retried later without counting as attempts.
+ * <p>
+ * Events are claimed in a short transaction and delivered after it commits, so no
+ * row lock or connection is held across HTTP calls. A claim lapses after the claim
+ * timeout, and the events of a dispatcher that died mid-batch are delivered again;
+ * stock adjustments carry a reference, so inventory-service applies each only once.
+ */
+@Component
+public class OutboxDispatcher {
+    private final OutboxEventRepository repository;
+    private final InventoryClient inventoryClient;
+    private final NotificationClient notificationClient;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration rejectedRetryDelay;
+    private final Duration claimTimeout;
+
+    private final Timer dispatchLag;
+    private final Counter dispatched;
+    private final Counter failed;
+    private final Counter deadLettered;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong dead = new AtomicLong();
+    private final AtomicLong oldestPendingAgeSeconds = new AtomicLong();
+
+    public OutboxDispatcher(
+            OutboxEventRepository repository,
+            InventoryClient inventoryClient,
+            NotificationClient notificationClient,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            DownstreamGuard downstreamGuard,
+            @Value("${application.orders.outbox.batch-size:100}") int batchSize,
+            @Value("${application.orders.outbox.max-attempts:10}") int maxAttempts,
+            @Value("${application.orders.outbox.initial-backoff:PT1S}") Duration initialBackoff,
+            @Value("${application.orders.outbox.max-backoff:PT10M}") Duration maxBackoff,
+            @Value("${application.orders.outbox.claim-timeout:PT5M}") Duration claimTimeout) {
+        this.repository = repository;
+        this.inventoryClient = inventoryClient;
+        this.notificationClient = notificationClient;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.rejectedRetryDelay = downstreamGuard.getWaitInOpenState();
+        this.claimTimeout = claimTimeout;
+
+        this.dispatchLag = Timer.builder("order.outbox.dispatch.lag")
+                .description("Time from an event being written to it being delivered")
+                .register(meterRegistry);
+        this.dispatched = Counter.builder("order.outbox.dispatched").register(meterRegistry);
+        this.failed = Counter.builder("order.outbox.failed")
+                .description("Delivery attempts that failed and were rescheduled")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("order.outbox.dead.lettered").register(meterRegistry);
+        Gauge.builder("order.outbox.pending", pending, AtomicLong::get)
+                .description("Events waiting to be delivered")
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.dead", dead, AtomicLong::get)
+                .description("Events that exhausted their retries")
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.oldest.pending.age", oldestPendingAgeSeconds, AtomicLong::get)
+                .description("Age in seconds of the oldest undelivered event")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${application.orders.outbox.poll-interval:PT1S}")
+    public void dispatchDueEvents() {
+        List<OutboxEvent> claimed;
+        do {
+            claimed = claimBatch();
+            claimed.forEach(this::dispatch);
+        } while (claimed.size() == batchSize);
+        refreshGauges();
+    }
+
+    // The row locks last only until the claim is committed
+    private List<OutboxEvent> claimBatch() {
+        List<OutboxEvent> claimed = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> events = repository.lockDueEvents(now, batchSize);
+            events.forEach(event -> event.setClaimedUntil(now.plus(claimTimeout)));
+            return events;
+        });
+        return claimed == null ? List.of() : claimed;
+    }
+
+    // Runs outside any transaction; the outcome is saved on its own once the call returns
+    private void dispatch(OutboxEvent event) {
+        try {
+            deliver(event);
+            LocalDateTime now = LocalDateTime.now();
+            event.setStatus(OutboxStatus.DISPATCHED);
+            event.setDispatchedAt(now);
+            event.setLastError(null);
+            dispatched.increment();
+            dispatchLag.record(Duration.between(event.getCreatedAt(), now));
+        } catch (Exception e) {
+            reschedule(event, e);
+        }
+        event.setClaimedUntil(null);
+        repository.save(event);
+    }
+
+    private void deliver(OutboxEvent event) throws Exception {
+        switch (event.getType()) {
+            case NOTIFICATION -> notificationClient.send(
+                    objectMapper.readValue(event.getPayload(), new TypeReference<Map<String, String>>() { }));
+            case INVENTORY_ADJUSTMENT -> {
+                List<StockAdjustment> adjustments =
+                        objectMapper.readValue(event.getPayload(), new TypeReference<List<StockAdjustment>>() { });
+                // Events enqueued without a reference use the event's, which stays the same across retries
+                adjustments.stream()
+                        .filter(adjustment -> adjustment.getReference() == null)
+                        .forEach(adjustment -> adjustment.setReference("outbox-" + event.getId()));
+                inventoryClient.adjustStock(adjustments);
+            }
+        }
+    }
+
+    private void reschedule(OutboxEvent event, Exception error) {
+        if (DownstreamGuard.isRejection(error)) {
+            // The dependency was never called (breaker open or bulkhead full), so this doesn't use up an attempt;
+            // try again once the breaker may have half-opened
+            event.setLastError(String.valueOf(error.getMessage()));
+            event.setNextAttemptAt(LocalDateTime.now().plus(rejectedRetryDelay));
+            return;
+        }
+        int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        String message = String.valueOf(error.getMessage());
+        event.setLastError(message.length() > 1000 ? message.substring(0, 1000) : message);
+        // Retrying a refused decrement won't make stock appear; leave it for an operator straight away
+        if (attempts >= maxAttempts || error instanceof InsufficientStockException) {
+            event.setStatus(OutboxStatus.DEAD);
+            deadLettered.increment();
+            System.err.println("Outbox event " + event.getId() + " (" + event.getType() + ") moved to DEAD after "
+                    + attempts + " attempts: " + message);
+            return;
+        }
+        // Exponential backoff with +/-20% jitter so failed events don't retry in lockstep
+        long backoffMillis = Math.min(maxBackoff.toMillis(),
+                initialBackoff.toMillis() << Math.min(attempts - 1, 30));
+        long jitter = (long) (backoffMillis * ThreadLocalRandom.current().nextDouble(-0.2, 0.2));
+        event.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(backoffMillis + jitter)));
+        failed.increment();
+    }
+
+    private void refreshGauges() {
+        pending.set(repository.countByStatus(OutboxStatus.PENDING));
+        dead.set(repository.countByStatus(OutboxStatus.DEAD));
+        LocalDateTime oldest = repository.findOldestPendingCreatedAt();
+        oldestPendingAgeSeconds.set(oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).getSeconds());
+    }
+}
@@ -0,0 +1,65 @@
+package com.icecream.order.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icecream.order.dto.StockAdjustment;
+import com.icecream.order.model.OutboxEvent;
+import com.icecream.order.model.OutboxEventType;
+import com.icecream.order.model.OutboxStatus;
+import com.icecream.order.repository.OutboxEventRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records order side effects in the outbox. Callers invoke this inside the order's
+ * transaction, so an event exists if and only if the order was committed.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    private final OutboxEventRepository repository;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * User tokens were once stored with stock adjustments; the dispatcher now uses
+     * this service's own credential, so the column and any tokens left in it go.
+     */
+    @PostConstruct
+    void dropStoredTokens() {
+        jdbcTemplate.execute("ALTER TABLE order_schema.outbox_events DROP COLUMN IF EXISTS bearer_token");
+    }
+
+    public OutboxEvent enqueueNotification(Map<String, String> notification) {
+        return enqueue(OutboxEventType.NOTIFICATION, notification);
+    }
+
+    /**
+     * Adjustments without a reference are given the event's id as one when delivered.
+     */
+    public OutboxEvent enqueueInventoryAdjustment(List<StockAdjustment> adjustments) {
+        return enqueue(OutboxEventType.INVENTORY_ADJUSTMENT, adjustments);
+    }
+
+    private OutboxEvent enqueue(OutboxEventType type, Object payload) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            return repository.save(OutboxEvent.builder()
+                    .type(type)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .status(OutboxStatus.PENDING)
+                    .attempts(0)
+                    .nextAttemptAt(now)
+                    .createdAt(now)
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unserializable outbox payload", e);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.icecream.order.service;
+
+import com.icecream.order.dto.SalesBucket;
+import com.icecream.order.model.Order;
+import com.icecream.order.model.OrderItem;
+import com.icecream.order.model.SalesGranularity;
+import com.icecream.order.model.SalesSummary;
+import com.icecream.order.model.SalesWatermark;
+import com.icecream.order.repository.SalesSummaryRepository;
+import com.icecream.order.repository.SalesWatermarkRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Running sales totals (units and revenue per product, per hour and per day) kept
+ * in memory as orders are placed, so dashboards never scan the order tables.
+ * <p>
+ * Each bucket has {@link LongAdder} counters for its total and for the part not yet
+ * persisted. A scheduled flush adds the unpersisted parts to {@code sales_summary}
+ * and advances the order-id watermark in the same transaction. Order ids commit
+ * out of order, so the flush also lists the ids it included in
+ * {@code sales_recorded_orders}, keeping those within a replay margin below the
+ * watermark. On startup the totals are loaded from the summary table and the
+ * orders above the watermark minus the margin that aren't listed are replayed.
+ * Recording takes the shared side of a read/write lock, so writers never block
+ * each other; the flush takes the exclusive side only while it swaps out the
+ * pending deltas.
+ * <p>
+ * Hourly buckets are kept in memory for the configured retention; daily buckets
+ * are kept for good. Totals cover orders placed through this instance plus
+ * whatever the summary table held when it started.
+ */
+@Component
+public class SalesAggregator {
+
+    private static final String UPSERT_SUMMARY = "INSERT INTO order_schema.sales_summary"
+            + " (granularity, bucket_start, product_id, units, revenue_cents) VALUES (?, ?, ?, ?, ?)"
+            + " ON CONFLICT (granularity, bucket_start, product_id) DO UPDATE SET"
+            + " units = sales_summary.units + EXCLUDED.units,"
+            + " revenue_cents = sales_summary.revenue_cents + EXCLUDED.revenue_cents";
+    private static final String UPSERT_WATERMARK = "INSERT INTO order_schema.sales_watermark"
+            + " (id, last_order_id, flushed_at) VALUES (?, ?, ?)"
+            + " ON CONFLICT (id) DO UPDATE SET"
+            + " last_order_id = GREATEST(sales_watermark.last_order_id, EXCLUDED.last_order_id),"
+            + " flushed_at = EXCLUDED.flushed_at";
+    private static final String INSERT_RECORDED = "INSERT INTO order_schema.sales_recorded_orders (order_id)"
+            + " VALUES (?) ON CONFLICT (order_id) DO NOTHING";
+    private static final String UNRECORDED_ORDERS = "SELECT o.id, o.created_at, i.product_id, i.quantity, i.price"
+            + " FROM order_schema.orders o JOIN order_schema.order_items i ON i.order_id = o.id"
+            + " WHERE o.id > ? AND o.created_at IS NOT NULL AND NOT EXISTS"
+            + " (SELECT 1 FROM order_schema.sales_recorded_orders r WHERE r.order_id = o.id)";
+
+    private final SalesSummaryRepository summaryRepository;
+    private final SalesWatermarkRepository watermarkRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration hourlyRetention;
+    private final long replayMargin;
+    private final Timer flushTimer;
+
+    private final Map<SalesGranularity, ConcurrentSkipListMap<LocalDateTime, Map<String, Counters>>> buckets =
+            new EnumMap<>(SalesGranularity.class);
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private volatile Set<BucketKey> dirty = ConcurrentHashMap.newKeySet();
+    private volatile Set<Long> unflushedOrders = ConcurrentHashMap.newKeySet();
+    private final AtomicLong highestRecordedOrderId = new AtomicLong();
+    private volatile long flushedWatermark;
+
+    public SalesAggregator(
+            SalesSummaryRepository summaryRepository,
+            SalesWatermarkRepository watermarkRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${application.orders.sales.hourly-retention:P14D}") Duration hourlyRetention,
+            @Value("${application.orders.sales.replay-margin:10000}") long replayMargin) {
+        this.summaryRepository = summaryRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.hourlyRetention = hourlyRetention;
+        this.replayMargin = replayMargin;
+        this.flushTimer = Timer.builder("order.sales.flush")
+                .description("Time to persist pending sales aggregates")
+                .register(meterRegistry);
+        for (SalesGranularity granularity : SalesGranularity.values()) {
+            buckets.put(granularity, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    @PostConstruct
+    void rebuild() {
+        long started = System.currentTimeMillis();
+        List<SalesSummary> rows = new ArrayList<>(summaryRepository.findByGranularityAndBucketStartGreaterThanEqual(
+                SalesGranularity.HOUR, hourlyCutoff()));
+        rows.addAll(summaryRepository.findByGranularityAndBucketStartGreaterThanEqual(
+                SalesGranularity.DAY, LocalDateTime.of(1970, 1, 1, 0, 0)));
+        for (SalesSummary row : rows) {
+            Counters counters = counters(new BucketKey(row.getGranularity(), row.getBucketStart(), row.getProductId()));
+            counters.units.add(row.getUnits());
+            counters.revenueCents.add(row.getRevenueCents());
+        }
+
+        long watermark = watermarkRepository.findById(SalesWatermark.SINGLETON_ID)
+                .map(SalesWatermark::getLastOrderId)
+                .orElse(0L);
+        highestRecordedOrderId.set(watermark);
+        flushedWatermark = watermark;
+        // Every flush lists the watermark's own order, so an empty list means totals flushed before
+        // orders were listed; nothing below the watermark can be told apart, so replay above it only
+        boolean listed = watermark == 0 || Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM order_schema.sales_recorded_orders)", Boolean.class));
+        long replayFrom = listed ? Math.max(0, watermark - replayMargin) : watermark;
+        long[] replayed = new long[1];
+        jdbcTemplate.query(UNRECORDED_ORDERS, resultSet -> {
+            long orderId = resultSet.getLong("id");
+            add(resultSet.getTimestamp("created_at").toLocalDateTime(), resultSet.getString("product_id"),
+                    resultSet.getInt("quantity"), resultSet.getDouble("price"));
+            highestRecordedOrderId.accumulateAndGet(orderId, Math::max);
+            unflushedOrders.add(orderId);
+            replayed[0]++;
+        }, replayFrom);
+        System.out.println("Sales aggregates rebuilt: " + rows.size() + " summary rows, " + replayed[0]
+                + " unrecorded order items above " + replayFrom + " (" + (System.currentTimeMillis() - started)
+                + " ms)");
+    }
+
+    /**
+     * Adds a committed order to the running totals.
+     */
+    public void record(Order order) {
+        if (order.getId() == null || order.getCreatedAt() == null || order.getItems() == null) {
+            return;
+        }
+        flushLock.readLock().lock();
+        try {
+            for (OrderItem item : order.getItems()) {
+                if (item.getProductId() != null && item.getQuantity() != null) {
+                    add(order.getCreatedAt(), item.getProductId(), item.getQuantity(),
+                            item.getPrice() == null ? 0 : item.getPrice());
+                }
+            }
+            highestRecordedOrderId.accumulateAndGet(order.getId(), Math::max);
+            unflushedOrders.add(order.getId());
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Buckets of the given granularity starting in [from, to), optionally for one
+     * product. Cost depends on the number of buckets returned, not on order volume.
+     * Hourly buckets older than the retention are not held and not returned.
+     */
+    public List<SalesBucket> query(SalesGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                   String productId) {
+        LocalDateTime start = granularity.bucketOf(from);
+        if (granularity == SalesGranularity.HOUR && start.isBefore(hourlyCutoff())) {
+            start = hourlyCutoff();
+        }
+        if (!start.isBefore(to)) {
+            return List.of();
+        }
+        NavigableMap<LocalDateTime, Map<String, Counters>> range =
+                buckets.get(granularity).subMap(start, true, to, false);
+        List<SalesBucket> result = new ArrayList<>();
+        range.forEach((bucketStart, byProduct) -> byProduct.forEach((product, counters) -> {
+            if (productId == null || productId.equals(product)) {
+                result.add(new SalesBucket(bucketStart, product, counters.units.sum(),
+                        counters.revenueCents.sum() / 100.0));
+            }
+        }));
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${application.orders.sales.flush-interval:PT30S}")
+    public void flush() {
+        flushTimer.record(this::flushPending);
+    }
+
+    private void flushPending() {
+        // Swap out the pending deltas and the watermark they correspond to atomically with respect to record()
+        Set<BucketKey> flushing;
+        Set<Long> flushingOrders;
+        long watermark;
+        List<Object[]> rows = new ArrayList<>();
+        List<Counters> drained = new ArrayList<>();
+        List<long[]> deltas = new ArrayList<>();
+        flushLock.writeLock().lock();
+        try {
+            flushing = dirty;
+            dirty = ConcurrentHashMap.newKeySet();
+            flushingOrders = unflushedOrders;
+            unflushedOrders = ConcurrentHashMap.newKeySet();
+            watermark = highestRecordedOrderId.get();
+            for (BucketKey key : flushing) {
+                Counters counters = counters(key);
+                long units = counters.pendingUnits.sumThenReset();
+                long revenueCents = counters.pendingRevenueCents.sumThenReset();
+                rows.add(new Object[] { key.granularity().name(), Timestamp.valueOf(key.bucketStart()),
+                        key.productId(), units, revenueCents });
+                drained.add(counters);
+                deltas.add(new long[] { units, revenueCents });
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+        if (rows.isEmpty() && flushingOrders.isEmpty() && watermark == flushedWatermark) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!rows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPSERT_SUMMARY, rows);
+                }
+                jdbcTemplate.update(UPSERT_WATERMARK, SalesWatermark.SINGLETON_ID, watermark,
+                        Timestamp.valueOf(LocalDateTime.now()));
+                jdbcTemplate.batchUpdate(INSERT_RECORDED, flushingOrders.stream()
+                        .map(orderId -> new Object[] { orderId })
+                        .toList());
+                jdbcTemplate.update("DELETE FROM order_schema.sales_recorded_orders WHERE order_id <= ?",
+                        watermark - replayMargin);
+            });
+        } catch (RuntimeException e) {
+            // Put the deltas back so the next flush retries them
+            for (int i = 0; i < drained.size(); i++) {
+                drained.get(i).pendingUnits.add(deltas.get(i)[0]);
+                drained.get(i).pendingRevenueCents.add(deltas.get(i)[1]);
+            }
+            dirty.addAll(flushing);
+            unflushedOrders.addAll(flushingOrders);
+            System.err.println("Failed to flush sales aggregates: " + e.getMessage());
+            return;
+        }
+        flushedWatermark = watermark;
+        evictExpiredHours();
+    }
+
+    private void add(LocalDateTime createdAt, String productId, int quantity, double price) {
+        long revenueCents = Math.round(quantity * price * 100);
+        for (SalesGranularity granularity : SalesGranularity.values()) {
+            BucketKey key = new BucketKey(granularity, granularity.bucketOf(createdAt), productId);
+            Counters counters = counters(key);
+            counters.units.add(quantity);
+            counters.revenueCents.add(revenueCents);
+            counters.pendingUnits.add(quantity);
+            counters.pendingRevenueCents.add(revenueCents);
+            dirty.add(key);
+        }
+    }
+
+    private Counters counters(BucketKey key) {
+        return buckets.get(key.granularity())
+                .computeIfAbsent(key.bucketStart(), bucket -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key.productId(), product -> new Counters());
+    }
+
+    private void evictExpiredHours() {
+        LocalDateTime cutoff = hourlyCutoff();
+        flushLock.writeLock().lock();
+        try {
+            // An hour with a late, still unflushed order stays until a later flush
+            Set<LocalDateTime> pendingHours = dirty.stream()
+                    .filter(key -> key.granularity() == SalesGranularity.HOUR)
+                    .map(BucketKey::bucketStart)
+                    .collect(Collectors.toSet());
+            buckets.get(SalesGranularity.HOUR).headMap(cutoff).keySet().removeIf(hour -> !pendingHours.contains(hour));
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private LocalDateTime hourlyCutoff() {
+        return SalesGranularity.HOUR.bucketOf(LocalDateTime.now().minus(hourlyRetention));
+    }
+
+    private record BucketKey(SalesGranularity granularity, LocalDateTime bucketStart, String productId) {
+    }
+
+    private static final class Counters {
+        final LongAdder units = new LongAdder();
+        final LongAdder revenueCents = new LongAdder();
+        final LongAdder pendingUnits = new LongAdder();
+        final LongAdder pendingRevenueCents = new LongAdder();
+    }
+}
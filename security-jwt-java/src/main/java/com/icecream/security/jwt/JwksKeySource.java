@@ -0,0 +1,72 @@
+package com.icecream.security.jwt;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.net.URL;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Auth-service's published key set, cached in memory and refreshed in the background
+ * so token verification never waits on the network. An unknown key id (typically
+ * right after a key rotation) triggers an immediate, rate-limited refresh.
+ */
+public class JwksKeySource implements JWKSource<SecurityContext> {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int READ_TIMEOUT_MILLIS = 2000;
+    private static final int SIZE_LIMIT_BYTES = 64 * 1024;
+
+    private final URL jwkSetUrl;
+    private final long minRefreshIntervalMillis;
+    // Not synchronized: the refresh does network I/O and would pin a virtual thread
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile JWKSet jwkSet = new JWKSet();
+    private volatile long lastRefreshAttempt;
+
+    public JwksKeySource(URL jwkSetUrl, Duration minRefreshInterval) {
+        this.jwkSetUrl = jwkSetUrl;
+        this.minRefreshIntervalMillis = minRefreshInterval.toMillis();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext context) throws KeySourceException {
+        List<JWK> matches = selector.select(jwkSet);
+        if (matches.isEmpty() && System.currentTimeMillis() - lastRefreshAttempt >= minRefreshIntervalMillis) {
+            refresh();
+            matches = selector.select(jwkSet);
+        }
+        return matches;
+    }
+
+    @Scheduled(fixedDelayString = "${application.security.jwt.jwks.refresh-interval:PT5M}")
+    public void refreshInBackground() {
+        try {
+            refresh();
+        } catch (KeySourceException e) {
+            // Keep serving the last known keys until auth-service is reachable again
+            System.err.println("Failed to refresh JWKS from " + jwkSetUrl + ": " + e.getMessage());
+        }
+    }
+
+    private void refresh() throws KeySourceException {
+        refreshLock.lock();
+        try {
+            lastRefreshAttempt = System.currentTimeMillis();
+            jwkSet = JWKSet.load(jwkSetUrl, CONNECT_TIMEOUT_MILLIS, READ_TIMEOUT_MILLIS, SIZE_LIMIT_BYTES);
+        } catch (IOException | ParseException e) {
+            throw new KeySourceException("Couldn't load JWKS: " + e.getMessage(), e);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+}
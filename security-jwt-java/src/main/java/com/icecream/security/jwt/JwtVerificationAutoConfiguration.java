@@ -0,0 +1,79 @@
+package com.icecream.security.jwt;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.servlet.OAuth2ResourceServerAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifies auth-service tokens locally against its cached key set instead of
+ * calling {@code /api/auth/validate} per request, rejects tokens on its revocation
+ * feed and maps the "role" claim to authorities. Services keep their own
+ * {@code SecurityFilterChain}; any of these beans can be replaced by declaring one.
+ */
+@AutoConfiguration(before = OAuth2ResourceServerAutoConfiguration.class)
+@ConditionalOnProperty("spring.security.oauth2.resourceserver.jwt.jwk-set-uri")
+public class JwtVerificationAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public JwksKeySource jwksKeySource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") URL jwkSetUrl,
+            @Value("${application.security.jwt.jwks.min-refresh-interval:PT10S}") Duration minRefreshInterval) {
+        return new JwksKeySource(jwkSetUrl, minRefreshInterval);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty("application.security.jwt.revocation.feed-url")
+    public RevokedTokenList revokedTokenList(
+            @Value("${application.security.jwt.revocation.feed-url}") String feedUrl) {
+        return new RevokedTokenList(feedUrl);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public JwtDecoder jwtDecoder(JwksKeySource keySource, ObjectProvider<RevokedTokenList> revokedTokens) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, keySource));
+        processor.setJWTClaimsSetVerifier((claims, context) -> { });  // exp/nbf checked by Spring's validators
+        List<OAuth2TokenValidator<Jwt>> validators = new ArrayList<>();
+        validators.add(JwtValidators.createDefault());
+        revokedTokens.ifAvailable(validators::add);
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(validators));
+        return decoder;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public JwtAuthenticationConverter jwtAuthenticationConverter() {
+        // auth-service puts the user's role (USER, ADMIN) in the "role" claim
+        JwtGrantedAuthoritiesConverter authorities = new JwtGrantedAuthoritiesConverter();
+        authorities.setAuthoritiesClaimName("role");
+        authorities.setAuthorityPrefix("ROLE_");
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(authorities);
+        return converter;
+    }
+}
@@ -0,0 +1,67 @@
+package com.icecream.security.jwt;
+
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ids ({@code jti}) of tokens revoked at auth-service, i.e. logged out, polled from its
+ * revocation feed and checked on every request.
+ * <p>
+ * A logged-out token is only rejected here once a poll has picked it up, so it stays
+ * usable for up to one refresh interval. While auth-service is unreachable the last
+ * list fetched keeps being applied.
+ */
+public class RevokedTokenList implements OAuth2TokenValidator<Jwt> {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+    private static final OAuth2Error REVOKED =
+            new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN, "The token has been revoked", null);
+
+    private final String feedUrl;
+    private final RestClient restClient;
+    private volatile Set<String> revoked = Set.of();
+
+    public RevokedTokenList(String feedUrl) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        requestFactory.setReadTimeout(READ_TIMEOUT_MILLIS);
+        this.feedUrl = feedUrl;
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public OAuth2TokenValidatorResult validate(Jwt jwt) {
+        String jti = jwt.getId();
+        return jti != null && revoked.contains(jti)
+                ? OAuth2TokenValidatorResult.failure(REVOKED)
+                : OAuth2TokenValidatorResult.success();
+    }
+
+    @Scheduled(fixedDelayString = "${application.security.jwt.revocation.refresh-interval:PT15S}")
+    public void refresh() {
+        try {
+            RevokedTokens feed = restClient.get().uri(feedUrl).retrieve().body(RevokedTokens.class);
+            revoked = feed == null || feed.tokens() == null ? Set.of() : Set.copyOf(feed.tokens());
+        } catch (RestClientException e) {
+            System.err.println("Failed to refresh revoked tokens from " + feedUrl + ": " + e.getMessage());
+        }
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    private record RevokedTokens(List<String> tokens) {
+    }
+}
@@ -0,0 +1,178 @@
+// Stock journal benchmark
+// Fills inventory-service's stock journal with tens of millions of movements
+// through the batch adjust endpoint, then reports what an append cost inside the
+// service and how fast the whole journal replays.
+//
+//   node stock-journal-benchmark.js [entries] [products] [workers] [replays]
+//
+// Each request raises every benchmark product by one, so it journals one movement
+// per product. Append times come from the service's inventory.journal.append
+// timer; for p50/p99 on top of the mean and max, start the service with
+//
+//   JOURNAL_APPEND_PERCENTILES=true docker-compose up -d inventory-service
+//
+// The replay runs over the whole journal, including movements from before this
+// run, and must agree with the stock the service holds. Runs are saved to
+// benchmark-results.json under the number of entries replayed.
+
+const fs = require('fs');
+
+const AUTH_URL = process.env.AUTH_URL || 'http://localhost:8081';
+const INVENTORY_URL = process.env.INVENTORY_URL || 'http://localhost:8084';
+const ADMIN = { email: 'admin@example.com', password: 'password123' };
+const RESULTS_FILE = 'benchmark-results.json';
+
+const ENTRIES = parseInt(process.argv[2] || '20000000', 10);
+const PRODUCTS = parseInt(process.argv[3] || '500', 10);
+const WORKERS = parseInt(process.argv[4] || '16', 10);
+const REPLAYS = parseInt(process.argv[5] || '5', 10);
+const APPEND_TIMER = 'inventory.journal.append';
+
+async function login() {
+    const response = await fetch(`${AUTH_URL}/api/auth/login`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify(ADMIN)
+    });
+    if (!response.ok) {
+        throw new Error(`Login failed: ${response.status} ${await response.text()}`);
+    }
+    return (await response.json()).token;
+}
+
+// Measurements of a meter by statistic, in the registry's base unit (seconds for timers)
+async function metric(name, tag) {
+    const response = await fetch(`${INVENTORY_URL}/actuator/metrics/${name}${tag ? `?tag=${tag}` : ''}`);
+    if (!response.ok) {
+        return null;
+    }
+    const measurements = {};
+    for (const measurement of (await response.json()).measurements) {
+        measurements[measurement.statistic] = measurement.value;
+    }
+    return measurements;
+}
+
+async function fill(token) {
+    const batch = JSON.stringify(Array.from({ length: PRODUCTS },
+        (_, i) => ({ productId: `journal-bench-${i}`, quantity: 1 })));
+    const requests = Math.ceil(ENTRIES / PRODUCTS);
+    const progressStep = Math.max(1, Math.floor(requests / 10));
+    let next = 0;
+    let done = 0;
+    await Promise.all(Array.from({ length: WORKERS }, async () => {
+        while (next < requests) {
+            next++;
+            const response = await fetch(`${INVENTORY_URL}/api/inventory/adjust`, {
+                method: 'POST',
+                headers: { 'Content-Type': 'application/json', Authorization: `Bearer ${token}` },
+                body: batch
+            });
+            if (!response.ok) {
+                throw new Error(`Adjust failed: ${response.status} ${await response.text()}`);
+            }
+            await response.text();
+            if (++done % progressStep === 0) {
+                console.log(`   ${done * PRODUCTS} movements journaled`);
+            }
+        }
+    }));
+    return requests * PRODUCTS;
+}
+
+async function replay(token) {
+    const started = performance.now();
+    const response = await fetch(`${INVENTORY_URL}/api/inventory/journal/replay`, {
+        method: 'POST',
+        headers: { Authorization: `Bearer ${token}` }
+    });
+    if (!response.ok) {
+        throw new Error(`Replay failed: ${response.status} ${await response.text()}`);
+    }
+    const report = await response.json();
+    return { ...report, requestMillis: performance.now() - started };
+}
+
+function nanos(seconds) {
+    return seconds == null ? null : seconds * 1e9;
+}
+
+function save(result) {
+    const results = fs.existsSync(RESULTS_FILE) ? JSON.parse(fs.readFileSync(RESULTS_FILE, 'utf8')) : {};
+    results.stockJournal = results.stockJournal || {};
+    results.stockJournal[result.replay.entries] = result;
+    fs.writeFileSync(RESULTS_FILE, JSON.stringify(results, null, 2));
+}
+
+async function run() {
+    console.log('📒 STOCK JOURNAL BENCHMARK\n');
+    console.log('='.repeat(60));
+    console.log(`${ENTRIES} movements over ${PRODUCTS} products from ${WORKERS} workers, then ${REPLAYS} replays`);
+
+    const token = await login();
+    const before = await metric(APPEND_TIMER);
+    if (!before) {
+        throw new Error(`Metric ${APPEND_TIMER} unavailable; is the journal enabled and metrics exposed?`);
+    }
+
+    console.log('\n✍️  Filling the journal');
+    console.log('-'.repeat(40));
+    const fillStarted = performance.now();
+    const sent = await fill(token);
+    const fillSeconds = (performance.now() - fillStarted) / 1000;
+    const after = await metric(APPEND_TIMER);
+    const appended = after.COUNT - before.COUNT;
+    const append = {
+        count: appended,
+        meanNanos: nanos((after.TOTAL_TIME - before.TOTAL_TIME) / appended),
+        // Max is over the timer's recent window, not only this run
+        maxNanos: nanos(after.MAX),
+        p50Nanos: nanos((await metric(`${APPEND_TIMER}.percentile`, 'phi:0.5'))?.VALUE),
+        p99Nanos: nanos((await metric(`${APPEND_TIMER}.percentile`, 'phi:0.99'))?.VALUE)
+    };
+    console.log(`   ${sent} movements in ${fillSeconds.toFixed(1)} s (${Math.round(sent / fillSeconds)}/s end to end)`);
+    console.log(`   Append: mean ${append.meanNanos.toFixed(0)} ns, max ${(append.maxNanos / 1000).toFixed(1)} µs`
+        + (append.p50Nanos == null ? ' (start with JOURNAL_APPEND_PERCENTILES=true for p50/p99)'
+            : `, p50 ${append.p50Nanos.toFixed(0)} ns, p99 ${append.p99Nanos.toFixed(0)} ns`));
+
+    console.log('\n🔁 Replaying');
+    console.log('-'.repeat(40));
+    const replays = [];
+    for (let i = 0; i < REPLAYS; i++) {
+        const report = await replay(token);
+        replays.push(report);
+        console.log(`   Run ${i + 1}: ${report.entries} entries over ${report.products} products in ${report.millis} ms`
+            + ` (${(report.entriesPerSecond / 1e6).toFixed(1)}M entries/s), ${report.mismatches.length} mismatches`);
+    }
+    // The first run may read segments from disk; the others from the page cache
+    const warm = replays.length > 1 ? replays.slice(1) : replays;
+    const warmMillis = warm.map(report => report.millis).sort((a, b) => a - b);
+    const last = replays[replays.length - 1];
+
+    const checks = [
+        ['Every movement was journaled', appended === sent],
+        ['Replay agrees with the stock held', replays.every(report => report.mismatches.length === 0)],
+        ['Journal holds the requested volume', last.entries >= ENTRIES]
+    ];
+    console.log('\n✅ Checks');
+    console.log('-'.repeat(40));
+    checks.forEach(([name, passed]) => console.log(`   ${passed ? '✓' : '✗'} ${name}`));
+
+    save({
+        products: PRODUCTS,
+        fill: { movements: sent, seconds: fillSeconds },
+        append,
+        replay: {
+            entries: last.entries,
+            coldMillis: replays[0].millis,
+            warmMillis: { min: warmMillis[0], max: warmMillis[warmMillis.length - 1] },
+            entriesPerSecond: Math.round(last.entries / (Math.max(1, warmMillis[0]) / 1000))
+        }
+    });
+    process.exitCode = checks.every(([, passed]) => passed) ? 0 : 1;
+}
+
+run().catch(error => {
+    console.error('❌ Benchmark failed:', error.message);
+    process.exitCode = 1;
+});
@@ -0,0 +1,182 @@
+// Virtual-thread throughput benchmark
+// Places orders while inventory-service answers slowly, to compare order-service
+// on its fixed pool of platform threads with virtual threads.
+//
+//   node virtual-thread-benchmark.js <label> [workers] [seconds] [delayMs]
+//
+// The script serves a stand-in for inventory-service's adjust endpoint that
+// answers after delayMs. Point order-service at it, and raise the inventory
+// bulkhead so that request threads, not the bulkhead, are what run out:
+//
+//   export INVENTORY_URL=http://host.docker.internal:9099 INVENTORY_MAX_CONCURRENT_CALLS=5000
+//   VIRTUAL_THREADS_ENABLED=false docker-compose up -d order-service
+//   node virtual-thread-benchmark.js platform
+//   VIRTUAL_THREADS_ENABLED=true docker-compose up -d order-service
+//   node virtual-thread-benchmark.js virtual
+//
+// With 200 Tomcat threads and a 500 ms downstream, platform threads top out near
+// 400 orders/s however many clients wait; virtual threads should keep scaling
+// with the workers. Runs are saved to benchmark-results.json and each run is
+// compared with the earlier ones.
+
+const fs = require('fs');
+const http = require('http');
+
+const AUTH_URL = process.env.AUTH_URL || 'http://localhost:8081';
+const ORDER_URL = process.env.ORDER_URL || 'http://localhost:8083';
+const STUB_PORT = parseInt(process.env.STUB_PORT || '9099', 10);
+const RESULTS_FILE = 'benchmark-results.json';
+
+const LABEL = process.argv[2];
+const WORKERS = parseInt(process.argv[3] || '600', 10);
+const SECONDS = parseInt(process.argv[4] || '30', 10);
+const DELAY_MILLIS = parseInt(process.argv[5] || '500', 10);
+const WARMUP_SECONDS = 5;
+
+let downstreamCalls = 0;
+
+function startSlowInventory() {
+    const server = http.createServer((request, response) => {
+        request.resume();
+        request.on('end', () => {
+            if (request.method !== 'POST' || request.url !== '/api/inventory/adjust') {
+                response.writeHead(404).end();
+                return;
+            }
+            downstreamCalls++;
+            setTimeout(() => {
+                response.writeHead(200, { 'Content-Type': 'application/json' }).end('[]');
+            }, DELAY_MILLIS);
+        });
+    });
+    return new Promise(resolve => server.listen(STUB_PORT, () => resolve(server)));
+}
+
+async function registerUser() {
+    const email = `vt-bench-${Date.now()}@example.com`;
+    const response = await fetch(`${AUTH_URL}/api/auth/register`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify({ firstName: 'Bench', lastName: 'User', email, password: 'Bench123!' })
+    });
+    if (!response.ok) {
+        throw new Error(`Registration failed: ${response.status} ${await response.text()}`);
+    }
+    return { email, token: (await response.json()).token };
+}
+
+async function placeOrder(user) {
+    const started = performance.now();
+    const response = await fetch(`${ORDER_URL}/api/orders`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json', Authorization: `Bearer ${user.token}` },
+        body: JSON.stringify({
+            userEmail: user.email,
+            items: [{ productId: 'vt-bench', productName: 'Benchmark scoop', quantity: 1, price: 1.0 }],
+            totalAmount: 1.0,
+            shippingAddress: '1 Benchmark Lane'
+        })
+    });
+    await response.text();
+    return { status: response.status, millis: performance.now() - started };
+}
+
+async function load(user, seconds) {
+    const counts = {};
+    const latencies = [];
+    const deadline = performance.now() + seconds * 1000;
+    await Promise.all(Array.from({ length: WORKERS }, async () => {
+        while (performance.now() < deadline) {
+            try {
+                const result = await placeOrder(user);
+                counts[result.status] = (counts[result.status] || 0) + 1;
+                if (result.status === 200) {
+                    latencies.push(result.millis);
+                }
+            } catch (error) {
+                counts.error = (counts.error || 0) + 1;
+            }
+        }
+    }));
+    return { counts, latencies };
+}
+
+function percentile(sorted, p) {
+    return sorted.length === 0 ? NaN : sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+}
+
+function save(result) {
+    const results = fs.existsSync(RESULTS_FILE) ? JSON.parse(fs.readFileSync(RESULTS_FILE, 'utf8')) : {};
+    results.virtualThreads = results.virtualThreads || {};
+    results.virtualThreads[LABEL] = result;
+    fs.writeFileSync(RESULTS_FILE, JSON.stringify(results, null, 2));
+    return results.virtualThreads;
+}
+
+async function run() {
+    if (!LABEL) {
+        throw new Error('Usage: node virtual-thread-benchmark.js <label> [workers] [seconds] [delayMs]');
+    }
+    console.log('🧵 VIRTUAL-THREAD THROUGHPUT BENCHMARK\n');
+    console.log('='.repeat(60));
+    console.log(`Run "${LABEL}": ${WORKERS} workers for ${SECONDS} s, inventory answering after ${DELAY_MILLIS} ms`);
+
+    const server = await startSlowInventory();
+    try {
+        const user = await registerUser();
+        await load(user, WARMUP_SECONDS);
+        downstreamCalls = 0;
+
+        const started = performance.now();
+        const { counts, latencies } = await load(user, SECONDS);
+        const elapsed = (performance.now() - started) / 1000;
+        const placed = counts[200] || 0;
+        latencies.sort((a, b) => a - b);
+        const result = {
+            workers: WORKERS,
+            delayMillis: DELAY_MILLIS,
+            throughput: placed / elapsed,
+            p50: percentile(latencies, 0.5),
+            p99: percentile(latencies, 0.99),
+            counts
+        };
+
+        console.log('\n📊 Results');
+        console.log('-'.repeat(40));
+        console.log(`   Responses:   ${JSON.stringify(counts)}`);
+        console.log(`   Throughput:  ${result.throughput.toFixed(1)} orders/s over ${elapsed.toFixed(2)} s`);
+        console.log(`   Latency:     p50 ${result.p50.toFixed(1)} ms, p99 ${result.p99.toFixed(1)} ms`);
+        console.log(`   Downstream:  ${downstreamCalls} slow inventory calls`);
+
+        // Orders whose inventory call was refused (bulkhead, breaker, deadline) skip the slow
+        // call and go to the outbox, which would hide the thread limit being measured
+        const checks = [
+            ['Orders waited on the slow inventory call', downstreamCalls >= placed * 0.95],
+            ['No failed requests', placed > 0 && Object.keys(counts).every(status => status === '200')]
+        ];
+        console.log('\n✅ Validity');
+        console.log('-'.repeat(40));
+        checks.forEach(([name, passed]) => console.log(`   ${passed ? '✓' : '✗'} ${name}`));
+
+        const runs = save(result);
+        const others = Object.keys(runs).filter(label => label !== LABEL);
+        if (others.length > 0) {
+            console.log('\n⚖️  Compared with earlier runs');
+            console.log('-'.repeat(40));
+            for (const label of others) {
+                const other = runs[label];
+                console.log(`   vs ${label}: throughput ${(result.throughput / other.throughput).toFixed(2)}x `
+                    + `(${other.throughput.toFixed(1)} → ${result.throughput.toFixed(1)} orders/s), `
+                    + `p99 ${other.p99.toFixed(0)} → ${result.p99.toFixed(0)} ms`);
+            }
+        }
+        process.exitCode = checks.every(([, passed]) => passed) ? 0 : 1;
+    } finally {
+        server.close();
+    }
+}
+
+run().catch(error => {
+    console.error('❌ Benchmark failed:', error.message);
+    process.exitCode = 1;
+});